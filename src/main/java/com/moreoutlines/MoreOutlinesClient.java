@@ -7,8 +7,10 @@ import com.moreoutlines.gui.ModConfigScreen;
 import com.moreoutlines.keybinds.ModKeybinds;
 import com.moreoutlines.network.ClientNetworking;
 import com.moreoutlines.network.ServerPermissionManager;
+import com.moreoutlines.renderer.BlockSelectionOutlineRenderer;
 import com.moreoutlines.scanner.BlockSelectionScanner;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.minecraft.client.MinecraftClient;
@@ -42,6 +44,7 @@ public class MoreOutlinesClient implements ClientModInitializer {
 		
 		initializeKeybinds();
 		registerClientTickEvents();
+		registerChunkEvents();
 	}
 	
 	/**
@@ -61,6 +64,18 @@ public class MoreOutlinesClient implements ClientModInitializer {
 		});
 	}
 	
+	/**
+	 * Register chunk load/unload handlers so the block scanner can update incrementally.
+	 */
+	private void registerChunkEvents() {
+		ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+			BlockSelectionScanner.getInstance().onChunkLoad(world, chunk);
+			BlockSelectionOutlineRenderer.onChunkLoad(chunk);
+		});
+		ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) ->
+			BlockSelectionScanner.getInstance().onChunkUnload(world, chunk));
+	}
+	
 	/**
 	 * Handle keybind processing.
 	 */
@@ -98,6 +113,7 @@ public class MoreOutlinesClient implements ClientModInitializer {
 		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
 			// Reset permission state when leaving server
 			ServerPermissionManager.reset();
+			client.execute(() -> BlockSelectionScanner.getInstance().onDisconnect());
 		});
 	}
 	
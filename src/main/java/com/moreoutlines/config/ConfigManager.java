@@ -89,6 +89,18 @@ public class ConfigManager {
         ConfigData data = new ConfigData();
         data.outlinesEnabled = config.outlinesEnabled;
         data.defaultColor = config.defaultColor;
+        data.incrementalScanning = config.incrementalScanning;
+        data.scanBudgetMicros = config.scanBudgetMicros;
+        data.scanRadius = config.scanRadius;
+        data.scanShape = config.scanShape;
+        data.minScanIntervalTicks = config.minScanIntervalTicks;
+        data.maxScanIntervalTicks = config.maxScanIntervalTicks;
+        data.dimensionCacheMegabytes = config.dimensionCacheMegabytes;
+        data.rememberBlocks = config.rememberBlocks;
+        data.maxRememberedBlocks = config.maxRememberedBlocks;
+        data.persistBlockIndex = config.persistBlockIndex;
+        data.maxTrackedBlocks = config.maxTrackedBlocks;
+        data.chunkBuilderOutlines = config.chunkBuilderOutlines;
         
         // Convert maps to serializable format
         data.selectedItems = new HashMap<>(config.selectedItems);
@@ -106,6 +118,18 @@ public class ConfigManager {
         
         config.outlinesEnabled = data.outlinesEnabled;
         config.defaultColor = data.defaultColor;
+        config.incrementalScanning = data.incrementalScanning;
+        config.scanBudgetMicros = Math.max(1, data.scanBudgetMicros);
+        config.scanRadius = Math.clamp(data.scanRadius, ModConfig.MIN_SCAN_RADIUS, ModConfig.MAX_SCAN_RADIUS);
+        config.scanShape = data.scanShape != null ? data.scanShape : ScanShape.CUBE;
+        config.minScanIntervalTicks = Math.max(1, data.minScanIntervalTicks);
+        config.maxScanIntervalTicks = Math.max(config.minScanIntervalTicks, data.maxScanIntervalTicks);
+        config.dimensionCacheMegabytes = Math.max(0, data.dimensionCacheMegabytes);
+        config.rememberBlocks = data.rememberBlocks;
+        config.maxRememberedBlocks = Math.max(0, data.maxRememberedBlocks);
+        config.persistBlockIndex = data.persistBlockIndex;
+        config.maxTrackedBlocks = Math.max(0, data.maxTrackedBlocks);
+        config.chunkBuilderOutlines = data.chunkBuilderOutlines;
         
         // Clear and repopulate maps
         config.selectedItems.clear();
@@ -121,6 +145,7 @@ public class ConfigManager {
         if (data.selectedBlocks != null) {
             config.selectedBlocks.putAll(data.selectedBlocks);
         }
+        config.markSelectionChanged();
     }
 
     /**
@@ -143,6 +168,18 @@ public class ConfigManager {
     private static class ConfigData {
         public boolean outlinesEnabled = false;
         public int defaultColor = 0xFFFFFFFF;
+        public boolean incrementalScanning = true;
+        public int scanBudgetMicros = 1000;
+        public int scanRadius = 32;
+        public ScanShape scanShape = ScanShape.CUBE;
+        public int minScanIntervalTicks = 1;
+        public int maxScanIntervalTicks = 20;
+        public int dimensionCacheMegabytes = 32;
+        public boolean rememberBlocks = false;
+        public int maxRememberedBlocks = 100000;
+        public boolean persistBlockIndex = false;
+        public int maxTrackedBlocks = 0;
+        public boolean chunkBuilderOutlines = false;
         public Map<Identifier, ModConfig.OutlineConfig> selectedItems = new HashMap<>();
         public Map<Identifier, ModConfig.OutlineConfig> selectedEntities = new HashMap<>();
         public Map<Identifier, ModConfig.OutlineConfig> selectedBlocks = new HashMap<>();
@@ -12,9 +12,41 @@ import java.util.Map;
 public class ModConfig {
     public static final ModConfig INSTANCE = new ModConfig();
     
+    public static final int MIN_SCAN_RADIUS = 8;
+    public static final int MAX_SCAN_RADIUS = 256;
+    
     public boolean outlinesEnabled = false;
     
     public int defaultColor = 0xFFFFFFFF; // White by default
+    
+    // Patch block scan results from world updates instead of rescanning every tick
+    public boolean incrementalScanning = true;
+    
+    // Client-thread time a block scan sweep may use per tick, in microseconds
+    public int scanBudgetMicros = 1000;
+    
+    // Volume around the player scanned for selected blocks
+    public int scanRadius = 32;
+    public ScanShape scanShape = ScanShape.CUBE;
+    
+    // Bounds for the adaptive interval between block scans, in ticks
+    public int minScanIntervalTicks = 1;
+    public int maxScanIntervalTicks = 20;
+    
+    // Memory kept for block results of dimensions the player left, 0 to disable
+    public int dimensionCacheMegabytes = 32;
+    
+    // Keep outlining selected blocks seen before once they leave the scan volume
+    public boolean rememberBlocks = false;
+    public int maxRememberedBlocks = 100000;
+    // Save remembered blocks per world and dimension, to reload them on the next join
+    public boolean persistBlockIndex = false;
+    
+    // Nearest selected blocks kept for rendering, 0 for no limit
+    public int maxTrackedBlocks = 0;
+    
+    // Tessellate block outlines on the chunk builder threads along with section meshes
+    public boolean chunkBuilderOutlines = false;
 
     // Specific item, entity, block selections
     public final Map<Identifier, OutlineConfig> selectedItems = new HashMap<>();
@@ -27,6 +59,10 @@ public class ModConfig {
     public static class OutlineConfig {
         public boolean enabled;
         public int color;
+        // Blocks only: nearest blocks of this type kept for rendering, 0 for no limit
+        public int maxBlocks;
+        // Blocks only: scan radius for this type, 0 to use the global scan radius
+        public int radius;
         
         public OutlineConfig(boolean enabled, int color) {
             this.enabled = enabled;
@@ -34,6 +70,11 @@ public class ModConfig {
         }
     }
     
+    // Bumped whenever the block selection changes, so derived scan data can be rebuilt
+    private int selectionRevision = 0;
+    // Bumped whenever a selected block's color changes, which only needs a recolor
+    private int blockColorRevision = 0;
+    
     private ModConfig() {}
     
     /**
@@ -77,6 +118,10 @@ public class ModConfig {
         } else {
             config.enabled = !config.enabled;
         }
+        // Only the block selection is compiled into scan data; items and entities are matched live
+        if (selectionMap == selectedBlocks) {
+            markSelectionChanged();
+        }
         saveConfig();
     }
 
@@ -87,6 +132,9 @@ public class ModConfig {
         OutlineConfig config = selectionMap.get(id);
         if (config != null) {
             config.color = color;
+            if (selectionMap == selectedBlocks) {
+                blockColorRevision++;
+            }
             saveConfig();
         }
     }    /**
@@ -154,6 +202,37 @@ public class ModConfig {
         return getColor(selectedBlocks, blockId);
     }
     
+    /**
+     * Marks the selections as changed so that compiled lookups and scan results get rebuilt.
+     */
+    public void markSelectionChanged() {
+        selectionRevision++;
+    }
+    
+    /**
+     * Gets a counter that changes whenever the selections change.
+     */
+    public int getSelectionRevision() {
+        return selectionRevision;
+    }
+    
+    /**
+     * Gets a counter that changes whenever the color of a selected block changes.
+     */
+    public int getBlockColorRevision() {
+        return blockColorRevision;
+    }
+    
+    public void setScanRadius(int scanRadius) {
+        this.scanRadius = Math.clamp(scanRadius, MIN_SCAN_RADIUS, MAX_SCAN_RADIUS);
+        saveConfig();
+    }
+    
+    public void setScanShape(ScanShape scanShape) {
+        this.scanShape = scanShape;
+        saveConfig();
+    }
+    
     /**
      * Sets the default color for new outline configurations.
      * @param color The new default color
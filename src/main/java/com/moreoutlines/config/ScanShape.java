@@ -0,0 +1,43 @@
+package com.moreoutlines.config;
+
+/**
+ * Shape of the volume around the player that is scanned for selected blocks.
+ */
+public enum ScanShape {
+    CUBE("Cube"),
+    SPHERE("Sphere"),
+    CYLINDER("Cylinder"),
+    /** A full-height column spanning the client's render distance; ignores the scan radius. */
+    RENDER_DISTANCE("Render Distance");
+
+    private final String displayName;
+
+    ScanShape(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Checks whether an offset from the scan center lies inside this shape.
+     * Offsets are assumed to already lie within the shape's bounding box.
+     */
+    public boolean contains(long dx, long dy, long dz, int radius) {
+        long radiusSq = (long) radius * radius;
+        return switch (this) {
+            case CUBE, RENDER_DISTANCE -> true;
+            case SPHERE -> dx * dx + dy * dy + dz * dz <= radiusSq;
+            case CYLINDER -> dx * dx + dz * dz <= radiusSq;
+        };
+    }
+
+    /**
+     * Gets the next shape, for cycling through shapes in the GUI.
+     */
+    public ScanShape next() {
+        ScanShape[] values = values();
+        return values[(ordinal() + 1) % values.length];
+    }
+}
@@ -9,10 +9,13 @@ package com.moreoutlines.gui;
  * Used with inspiration for clean, user-friendly interface design.
  */
 
+import com.moreoutlines.config.ModConfig;
+import com.moreoutlines.config.ScanShape;
 import com.moreoutlines.gui.widgets.OutlineListWidget;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.client.gui.widget.SliderWidget;
 import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.text.Text;
 
@@ -33,6 +36,7 @@ public class ModConfigScreen extends Screen {
         super.init();
         
         final int margin = 35;
+        final int scanRowHeight = 24;
         
         // Search field at top
         this.searchField = new TextFieldWidget(this.textRenderer, this.width / 2 - 100, 6, 200, 20, Text.literal("Search..."));
@@ -50,8 +54,8 @@ public class ModConfigScreen extends Screen {
             .dimensions(this.width - 85, 6, 80, 20)
             .build());
         
-        // Scrollable list (leave extra space for column headers)
-        this.list = new OutlineListWidget(this.client, this.width, this.height - margin * 2 - 15, margin + 15, 25);
+        // Scrollable list (leave extra space for column headers and the scan settings row)
+        this.list = new OutlineListWidget(this.client, this.width, this.height - margin * 2 - 15 - scanRowHeight, margin + 15, 25);
         this.addDrawableChild(this.list);
         
         // Bottom buttons
@@ -61,6 +65,37 @@ public class ModConfigScreen extends Screen {
         int buttonInterval = (this.width - numberOfButtons * buttonWidth) / (numberOfButtons + 1);
         int buttonY = this.height - 16 - (buttonHeight / 2);
         
+        // Block scan settings row, above the bottom buttons
+        int scanRowY = buttonY - scanRowHeight;
+        int scanButtonWidth = 120;
+        
+        SliderWidget radiusSlider = new SliderWidget(
+                this.width / 2 + 5, scanRowY, scanButtonWidth, buttonHeight,
+                getScanRadiusText(ModConfig.INSTANCE.scanRadius), toSliderValue(ModConfig.INSTANCE.scanRadius)) {
+            @Override
+            protected void updateMessage() {
+                this.setMessage(getScanRadiusText(fromSliderValue(this.value)));
+            }
+            
+            @Override
+            protected void applyValue() {
+                ModConfig.INSTANCE.setScanRadius(fromSliderValue(this.value));
+            }
+        };
+        radiusSlider.active = ModConfig.INSTANCE.scanShape != ScanShape.RENDER_DISTANCE;
+        
+        this.addDrawableChild(ButtonWidget.builder(
+                getScanShapeText(ModConfig.INSTANCE.scanShape),
+                button -> {
+                    ModConfig.INSTANCE.setScanShape(ModConfig.INSTANCE.scanShape.next());
+                    button.setMessage(getScanShapeText(ModConfig.INSTANCE.scanShape));
+                    // The render distance shape takes its radius from the video settings
+                    radiusSlider.active = ModConfig.INSTANCE.scanShape != ScanShape.RENDER_DISTANCE;
+                })
+            .dimensions(this.width / 2 - 5 - scanButtonWidth, scanRowY, scanButtonWidth, buttonHeight)
+            .build());
+        this.addDrawableChild(radiusSlider);
+        
         // All Items button
         this.addDrawableChild(ButtonWidget.builder(
                 Text.literal("All Items"),
@@ -101,6 +136,26 @@ public class ModConfigScreen extends Screen {
         }
     }
     
+    private static Text getScanShapeText(ScanShape shape) {
+        return Text.literal("Scan Shape: " + shape.getDisplayName());
+    }
+    
+    private static Text getScanRadiusText(int radius) {
+        return Text.literal("Scan Radius: " + radius);
+    }
+    
+    /**
+     * Maps a scan radius to a slider position, in steps of 8 blocks.
+     */
+    private static double toSliderValue(int radius) {
+        return (double) (radius - ModConfig.MIN_SCAN_RADIUS) / (ModConfig.MAX_SCAN_RADIUS - ModConfig.MIN_SCAN_RADIUS);
+    }
+    
+    private static int fromSliderValue(double value) {
+        int radius = ModConfig.MIN_SCAN_RADIUS + (int) Math.round(value * (ModConfig.MAX_SCAN_RADIUS - ModConfig.MIN_SCAN_RADIUS) / 8.0) * 8;
+        return Math.clamp(radius, ModConfig.MIN_SCAN_RADIUS, ModConfig.MAX_SCAN_RADIUS);
+    }
+    
     private void toggleAllItems() {
         if (list != null) {
             list.toggleAllItems();
@@ -0,0 +1,29 @@
+package com.moreoutlines.mixins;
+
+import com.moreoutlines.renderer.BlockSelectionOutlineRenderer;
+import com.moreoutlines.scanner.BlockSelectionScanner;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Forwards client-side block changes to the block scanner and the outline
+ * mesh cache. Single block updates, chunk delta updates and local predictions
+ * all end up notifying the world's listeners, so this is the one place that
+ * sees every change. Only changes from or to a selected state are acted on.
+ */
+@Mixin(ClientWorld.class)
+public class ClientWorldMixin {
+
+    @Inject(method = "updateListeners", at = @At("HEAD"))
+    private void onUpdateListeners(BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
+        if (oldState != newState) {
+            BlockSelectionScanner.getInstance().onBlockUpdate((ClientWorld) (Object) this, pos, oldState, newState);
+            BlockSelectionOutlineRenderer.onBlockUpdate(pos, oldState, newState);
+        }
+    }
+}
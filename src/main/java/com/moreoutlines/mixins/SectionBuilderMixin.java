@@ -0,0 +1,27 @@
+package com.moreoutlines.mixins;
+
+import com.mojang.blaze3d.systems.VertexSorter;
+import com.moreoutlines.renderer.BlockSelectionOutlineRenderer;
+import net.minecraft.client.render.chunk.BlockBufferAllocatorStorage;
+import net.minecraft.client.render.chunk.ChunkRendererRegion;
+import net.minecraft.client.render.chunk.SectionBuilder;
+import net.minecraft.util.math.ChunkSectionPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Builds the outline mesh of a chunk section on the chunk builder thread that
+ * just built its terrain mesh, from the same block snapshot, when enabled.
+ */
+@Mixin(SectionBuilder.class)
+public class SectionBuilderMixin {
+
+    @Inject(method = "build", at = @At("RETURN"))
+    private void buildOutlineMesh(ChunkSectionPos sectionPos, ChunkRendererRegion renderRegion,
+            VertexSorter vertexSorter, BlockBufferAllocatorStorage allocatorStorage,
+            CallbackInfoReturnable<SectionBuilder.RenderData> cir) {
+        BlockSelectionOutlineRenderer.buildOnChunkBuilder(sectionPos, renderRegion);
+    }
+}
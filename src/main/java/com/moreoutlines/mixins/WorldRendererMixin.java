@@ -3,6 +3,7 @@ package com.moreoutlines.mixins;
 import com.moreoutlines.config.ModConfig;
 import com.moreoutlines.renderer.BlockSelectionOutlineRenderer;
 import com.moreoutlines.scanner.BlockSelectionScanner;
+import com.moreoutlines.scanner.BlockStateLookup;
 import com.moreoutlines.util.OutlineColorContext;
 import net.minecraft.client.render.BufferBuilderStorage;
 import net.minecraft.client.render.WorldRenderer;
@@ -14,9 +15,6 @@ import net.minecraft.client.render.state.CameraRenderState;
 import net.minecraft.client.render.state.WorldRenderState;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.world.ClientWorld;
-import net.minecraft.registry.Registries;
-import net.minecraft.util.Identifier;
-import net.minecraft.util.math.ColorHelper;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
@@ -37,13 +35,16 @@ public abstract class WorldRendererMixin {
     @Shadow
     protected abstract boolean canDrawEntityOutlines();
 
+    // The frustum of the frame being rendered, for culling block outlines
+    private net.minecraft.client.render.Frustum outlineFrustum;
+
     /**
      * Checks if block outline rendering is active and has tracked blocks.
      */
     private boolean hasActiveBlockOutlines() {
         return ModConfig.INSTANCE.isOutlinesEnabled()
             && !ModConfig.INSTANCE.selectedBlocks.isEmpty()
-            && !BlockSelectionScanner.getInstance().getTrackedBlocksByType().isEmpty();
+            && !BlockSelectionScanner.getInstance().getTrackedBlocks().isEmpty();
     }
 
     /**
@@ -60,6 +61,19 @@ public abstract class WorldRendererMixin {
         }
     }
 
+    /**
+     * Keep the frame's frustum for culling block outlines, and hand it to the
+     * block scanner so sections in view are scanned first.
+     */
+    @Inject(method = "fillEntityRenderStates", at = @At("HEAD"))
+    private void captureScanFrustum(net.minecraft.client.render.Camera camera,
+            net.minecraft.client.render.Frustum frustum,
+            net.minecraft.client.render.RenderTickCounter tickCounter,
+            WorldRenderState renderStates, CallbackInfo ci) {
+        this.outlineFrustum = frustum;
+        BlockSelectionScanner.getInstance().setViewFrustum(frustum);
+    }
+
     /**
      * Submit selected block outlines into the render command queue, alongside
      * the regular block entity rendering.
@@ -67,35 +81,36 @@ public abstract class WorldRendererMixin {
     @Inject(method = "renderBlockEntities", at = @At("TAIL"))
     private void renderCustomOutlines(MatrixStack matrices, WorldRenderState renderStates,
             OrderedRenderCommandQueueImpl queue, CallbackInfo ci) {
-        if (hasActiveBlockOutlines()) {
+        if (hasActiveBlockOutlines() && this.outlineFrustum != null) {
             BlockSelectionScanner scanner = BlockSelectionScanner.getInstance();
             BlockSelectionOutlineRenderer.renderBlockSelectionOutlines(
                 matrices,
                 renderStates.cameraRenderState.pos,
                 this.bufferBuilders.getOutlineVertexConsumers(),
                 this.world,
-                scanner.getTrackedBlocksByType()
+                this.outlineFrustum,
+                scanner.getTrackedBlocks()
             );
         }
     }
 
     /**
-     * Wrap each block entity render so that, if its block type is selected, the
+     * Wrap each block entity render so that, if its block is tracked, the
      * geometry it submits is tagged with our outline color. This makes the
      * single live render also populate the outline framebuffer (correct pose,
-     * no duplicate draw).
+     * no duplicate draw). Where a cap or a per-type scan radius applies, only
+     * tracked positions are tagged, so those limits hold for block entities too.
      */
     @Redirect(method = "renderBlockEntities", at = @At(value = "INVOKE",
         target = "Lnet/minecraft/client/render/block/entity/BlockEntityRenderManager;render(Lnet/minecraft/client/render/block/entity/state/BlockEntityRenderState;Lnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/command/OrderedRenderCommandQueue;Lnet/minecraft/client/render/state/CameraRenderState;)V"))
     private void wrapBlockEntityRender(BlockEntityRenderManager manager,
             BlockEntityRenderState state, MatrixStack matrices,
             OrderedRenderCommandQueue queue, CameraRenderState cameraRenderState) {
-        int color = 0;
-        if (hasActiveBlockOutlines()) {
-            Identifier blockId = Registries.BLOCK.getId(state.blockState.getBlock());
-            if (ModConfig.INSTANCE.isBlockSelected(blockId)) {
-                color = ColorHelper.fullAlpha(ModConfig.INSTANCE.getBlockColor(blockId));
-            }
+        BlockStateLookup lookup = BlockStateLookup.get();
+        int color = hasActiveBlockOutlines() ? lookup.getColor(state.blockState) : 0;
+        if (color != 0 && (ModConfig.INSTANCE.maxTrackedBlocks > 0 || lookup.isLimited(state.blockState))
+                && !BlockSelectionScanner.getInstance().getTrackedBlocks().contains(state.pos)) {
+            color = 0;
         }
 
         if (color != 0) {
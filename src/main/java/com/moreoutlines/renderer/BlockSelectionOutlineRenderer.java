@@ -1,21 +1,34 @@
 package com.moreoutlines.renderer;
 
 import com.moreoutlines.config.ModConfig;
+import com.moreoutlines.scanner.BlockSelectionScanner;
+import com.moreoutlines.scanner.BlockStateLookup;
+import com.moreoutlines.scanner.RememberedBlocks;
+import com.moreoutlines.scanner.TrackedBlockChanges;
+import com.moreoutlines.scanner.TrackedBlockListener;
+import com.moreoutlines.scanner.TrackedBlocks;
+import com.moreoutlines.scanner.TrackedSection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.Frustum;
 import net.minecraft.client.render.OutlineVertexConsumerProvider;
-import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.render.block.BlockRenderManager;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.ColorHelper;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockRenderView;
 import net.minecraft.world.World;
-
-import java.util.Map;
-import java.util.Set;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
 
 /**
  * Renders outlines for selected blocks (and block entities).
@@ -29,58 +42,183 @@ import java.util.Set;
  * their outlines are handled separately by tagging their normal render with an
  * outline color (see {@code OutlineColorContext} and the command-queue mixin),
  * so they are not handled here.
+ *
+ * <p>Tracked blocks are culled against the frame's frustum, a whole section at
+ * a time first and then block by block within the visible sections. Their
+ * silhouettes are tessellated once per section into an {@link OutlineMesh} and
+ * replayed from the {@link OutlineMeshCache} on later frames, until the
+ * section's tracked blocks change or a block update marks it stale. Blocks
+ * remembered outside the scan volume are meshed the same way, per chunk.
+ *
+ * <p>With {@code chunkBuilderOutlines} enabled, meshes are instead built on
+ * Minecraft's chunk builder threads whenever a section's terrain is rebuilt,
+ * and changes of the tracked blocks schedule a rebuild of their sections, so
+ * the render thread only replays meshes.
  */
 public class BlockSelectionOutlineRenderer {
+    private static final OutlineMeshCache MESH_CACHE = new OutlineMeshCache();
+    private static final TrackedBlockListener REBUILD_SCHEDULER = BlockSelectionOutlineRenderer::scheduleRebuilds;
+    private static boolean rebuildSchedulerRegistered;
 
     public static void renderBlockSelectionOutlines(
         MatrixStack matrices,
         Vec3d cameraPos,
         OutlineVertexConsumerProvider outlineConsumers,
         World world,
-        Map<Identifier, Set<BlockPos>> blocksByType
+        Frustum frustum,
+        TrackedBlocks trackedBlocks
     ) {
-        if (blocksByType.isEmpty()) {
+        MESH_CACHE.update(world, trackedBlocks);
+        boolean onChunkBuilders = ModConfig.INSTANCE.chunkBuilderOutlines;
+        if (onChunkBuilders != rebuildSchedulerRegistered) {
+            if (onChunkBuilders) {
+                BlockSelectionScanner.getInstance().addListener(REBUILD_SCHEDULER);
+            } else {
+                BlockSelectionScanner.getInstance().removeListener(REBUILD_SCHEDULER);
+            }
+            rebuildSchedulerRegistered = onChunkBuilders;
+        }
+
+        if (trackedBlocks.isEmpty()) {
             return;
         }
 
         MinecraftClient client = MinecraftClient.getInstance();
         BlockRenderManager blockRenderManager = client.getBlockRenderManager();
+        // Colors come from the current selection, so a recolor shows without a rescan
+        BlockStateLookup lookup = BlockStateLookup.get();
 
-        for (Map.Entry<Identifier, Set<BlockPos>> entry : blocksByType.entrySet()) {
-            Identifier blockId = entry.getKey();
-            Set<BlockPos> positions = entry.getValue();
+        trackedBlocks.forEachSectionInFrustum(frustum, section -> {
+            ChunkSection chunkSection = getChunkSection(world, section.getSectionKey());
+            if (chunkSection == null || chunkSection.isEmpty()) {
+                return;
+            }
 
-            if (positions.isEmpty()) {
-                continue;
+            OutlineMesh mesh = MESH_CACHE.get(section, chunkSection, blockRenderManager, !onChunkBuilders);
+            if (mesh != null) {
+                mesh.render(matrices, cameraPos, outlineConsumers, frustum, lookup);
             }
+        });
 
-            int outlineColor = ColorHelper.fullAlpha(ModConfig.INSTANCE.getBlockColor(blockId));
-            outlineConsumers.setColor(outlineColor);
+        renderRememberedBlocks(matrices, cameraPos, outlineConsumers, blockRenderManager, frustum, lookup, world,
+            trackedBlocks.getRemembered());
+    }
 
-            for (BlockPos pos : positions) {
-                BlockState state = world.getBlockState(pos);
-                if (state.isAir()) {
-                    continue;
-                }
+    /**
+     * Marks the outline mesh of the section holding a changed block stale, if
+     * the block was or became selected. Must be called from the client thread.
+     */
+    public static void onBlockUpdate(BlockPos pos, BlockState oldState, BlockState newState) {
+        BlockStateLookup lookup = BlockStateLookup.get();
+        if (lookup.matches(oldState) || lookup.matches(newState)) {
+            MESH_CACHE.markStale(ChunkSectionPos.toLong(pos));
+        }
+    }
 
-                matrices.push();
-                matrices.translate(
-                    pos.getX() - cameraPos.x,
-                    pos.getY() - cameraPos.y,
-                    pos.getZ() - cameraPos.z
-                );
-
-                // Block-state model silhouette (outline buffer only).
-                blockRenderManager.renderBlockAsEntity(
-                    state,
-                    matrices,
-                    outlineConsumers,
-                    LightmapTextureManager.MAX_LIGHT_COORDINATE,
-                    OverlayTexture.DEFAULT_UV
-                );
-
-                matrices.pop();
+    /**
+     * Marks the outline meshes of a chunk stale when its data is sent again.
+     * Must be called from the client thread.
+     */
+    public static void onChunkLoad(WorldChunk chunk) {
+        ChunkPos chunkPos = chunk.getPos();
+        int sectionCount = chunk.getSectionArray().length;
+        for (int index = 0; index < sectionCount; index++) {
+            MESH_CACHE.markStale(ChunkSectionPos.asLong(chunkPos.x, chunk.sectionIndexToCoord(index), chunkPos.z));
+        }
+    }
+
+    /**
+     * Builds the outline mesh of a section whose terrain was just rebuilt on a
+     * chunk builder thread, if that is enabled and the section is tracked.
+     */
+    public static void buildOnChunkBuilder(ChunkSectionPos sectionPos, BlockRenderView region) {
+        if (!ModConfig.INSTANCE.chunkBuilderOutlines) {
+            return;
+        }
+
+        TrackedSection section = BlockSelectionScanner.getInstance().getTrackedBlocks().getSection(sectionPos.asLong());
+        if (section != null) {
+            MESH_CACHE.offer(OutlineMesh.build(section, region, MinecraftClient.getInstance().getBlockRenderManager()));
+        }
+    }
+
+    /**
+     * Schedules the sections whose tracked blocks changed for rebuilding, so the
+     * chunk builders produce their new outline meshes.
+     */
+    private static void scheduleRebuilds(TrackedBlockChanges changes) {
+        LongSet sectionKeys = new LongOpenHashSet();
+        for (Identifier type : changes.getTypes()) {
+            collectSections(changes.getAdded(type), sectionKeys);
+            collectSections(changes.getRemoved(type), sectionKeys);
+        }
+
+        WorldRenderer worldRenderer = MinecraftClient.getInstance().worldRenderer;
+        LongIterator iterator = sectionKeys.iterator();
+        while (iterator.hasNext()) {
+            long sectionKey = iterator.nextLong();
+            int minX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey));
+            int minY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey));
+            int minZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey));
+            worldRenderer.scheduleBlockRenders(minX, minY, minZ, minX + 15, minY + 15, minZ + 15);
+        }
+    }
+
+    private static void collectSections(LongList positions, LongSet sectionKeys) {
+        for (int i = 0; i < positions.size(); i++) {
+            sectionKeys.add(ChunkSectionPos.fromBlockPos(positions.getLong(i)));
+        }
+    }
+
+    /**
+     * Renders blocks remembered outside the scan volume. Their chunks may not be
+     * loaded anymore, so the remembered state is drawn instead of the live one,
+     * from a mesh built once per chunk and culled a whole chunk column at a time.
+     */
+    private static void renderRememberedBlocks(
+        MatrixStack matrices,
+        Vec3d cameraPos,
+        OutlineVertexConsumerProvider outlineConsumers,
+        BlockRenderManager blockRenderManager,
+        Frustum frustum,
+        BlockStateLookup lookup,
+        World world,
+        RememberedBlocks remembered
+    ) {
+        if (remembered.isEmpty()) {
+            return;
+        }
+
+        int minY = world.getBottomY();
+        int maxY = world.getTopYInclusive() + 1;
+        LongIterator chunks = remembered.getChunks().iterator();
+        while (chunks.hasNext()) {
+            long chunkKey = chunks.nextLong();
+            int minX = ChunkSectionPos.getBlockCoord(ChunkPos.getPackedX(chunkKey));
+            int minZ = ChunkSectionPos.getBlockCoord(ChunkPos.getPackedZ(chunkKey));
+            if (frustum.isVisible(new Box(minX, minY, minZ, minX + 16, maxY, minZ + 16))) {
+                OutlineMesh mesh = MESH_CACHE.getRemembered(chunkKey, blockRenderManager);
+                if (mesh != null) {
+                    mesh.render(matrices, cameraPos, outlineConsumers, frustum, lookup);
+                }
             }
         }
     }
+
+    /**
+     * Resolves a tracked section's live chunk section once, so its blocks can be
+     * read without a chunk lookup per block.
+     *
+     * @return the section, or {@code null} if its chunk is not loaded
+     */
+    private static ChunkSection getChunkSection(World world, long sectionKey) {
+        int sectionY = ChunkSectionPos.unpackY(sectionKey);
+        if (world.isOutOfHeightLimit(ChunkSectionPos.getBlockCoord(sectionY))) {
+            return null;
+        }
+
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(
+            ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackZ(sectionKey));
+        return chunk == null ? null : chunk.getSection(chunk.sectionCoordToIndex(sectionY));
+    }
 }
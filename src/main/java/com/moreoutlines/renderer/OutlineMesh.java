@@ -0,0 +1,361 @@
+package com.moreoutlines.renderer;
+
+import com.moreoutlines.scanner.BlockStateLookup;
+import com.moreoutlines.scanner.RememberedBlocks;
+import com.moreoutlines.scanner.TrackedSection;
+import com.moreoutlines.util.RenderUtil;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.OutlineVertexConsumerProvider;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.BlockRenderView;
+import net.minecraft.world.chunk.ChunkSection;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * The outline geometry of one tracked section, or of the remembered blocks of
+ * one chunk, tessellated once and replayed into the
+ * {@link OutlineVertexConsumerProvider} every frame.
+ *
+ * <p>Vertices are kept relative to the mesh's origin, grouped per block
+ * into runs of the same render layer, so replaying them only translates the
+ * mesh and copies floats. Colors are not part of the mesh, they are looked
+ * up from the state each block was built from when replaying, so a recolor
+ * needs no rebuild.
+ */
+final class OutlineMesh {
+    // Position, texture and normal of each vertex
+    private static final int FLOATS_PER_VERTEX = 8;
+
+    private final TrackedSection section;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    // Block offsets from the origin, packed as y << 8 | z << 4 | x with a signed y
+    private final int[] offsets;
+    private final int[] stateIds;
+    // Segments of block i are firstSegments[i] until firstSegments[i + 1]
+    private final int[] firstSegments;
+    private final RenderLayer[] segmentLayers;
+    // Vertices of segment i are segmentStarts[i] until segmentStarts[i + 1]
+    private final int[] segmentStarts;
+    private final float[] vertices;
+    // Vertical extent of the blocks, the mesh spans 16 blocks horizontally
+    private final int minY;
+    private final int maxY;
+    // Frame of the cache this mesh was last drawn in, only touched on the render thread
+    int lastDrawnFrame;
+
+    private OutlineMesh(TrackedSection section, int originX, int originY, int originZ, int[] offsets,
+            int[] stateIds, int[] firstSegments, RenderLayer[] segmentLayers, int[] segmentStarts, float[] vertices) {
+        this.section = section;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.offsets = offsets;
+        this.stateIds = stateIds;
+        this.firstSegments = firstSegments;
+        this.segmentLayers = segmentLayers;
+        this.segmentStarts = segmentStarts;
+        this.vertices = vertices;
+
+        int minOffsetY = Integer.MAX_VALUE;
+        int maxOffsetY = Integer.MIN_VALUE;
+        for (int offset : offsets) {
+            minOffsetY = Math.min(minOffsetY, offset >> 8);
+            maxOffsetY = Math.max(maxOffsetY, offset >> 8);
+        }
+        this.minY = originY + minOffsetY;
+        this.maxY = originY + maxOffsetY + 1;
+    }
+
+    /**
+     * Tessellates the silhouettes of a tracked section's blocks, as they are in
+     * the live chunk section.
+     */
+    static OutlineMesh build(TrackedSection section, ChunkSection chunkSection, BlockRenderManager blockRenderManager) {
+        return build(section,
+            index -> chunkSection.getBlockState(index & 15, index >>> 8 & 15, index >>> 4 & 15),
+            blockRenderManager, false);
+    }
+
+    /**
+     * Tessellates the silhouettes of a tracked section's blocks on a chunk
+     * builder thread, from the builder's snapshot of the world. Only plain block
+     * models are drawn there; other render types are left out.
+     */
+    static OutlineMesh build(TrackedSection section, BlockRenderView region, BlockRenderManager blockRenderManager) {
+        long sectionKey = section.getSectionKey();
+        int originX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey));
+        int originY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey));
+        int originZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey));
+        BlockPos.Mutable cursor = new BlockPos.Mutable();
+        return build(section,
+            index -> region.getBlockState(
+                cursor.set(originX + (index & 15), originY + (index >>> 8 & 15), originZ + (index >>> 4 & 15))),
+            blockRenderManager, true);
+    }
+
+    /**
+     * @param states     the state of a block by its local index
+     * @param modelsOnly whether to skip blocks not rendered as a plain model
+     */
+    private static OutlineMesh build(TrackedSection section, IntFunction<BlockState> states,
+            BlockRenderManager blockRenderManager, boolean modelsOnly) {
+        Recorder recorder = new Recorder(blockRenderManager);
+        for (int index = section.nextBlock(0); index >= 0; index = section.nextBlock(index + 1)) {
+            BlockState state = states.apply(index);
+            if (!modelsOnly || state.getRenderType() == BlockRenderType.MODEL) {
+                // A local index is the packed offset from the section's origin
+                recorder.add(index, state);
+            }
+        }
+
+        long sectionKey = section.getSectionKey();
+        return recorder.finish(section,
+            ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey)),
+            ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey)),
+            ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey)));
+    }
+
+    /**
+     * Tessellates the remembered blocks of a chunk in their remembered states.
+     */
+    static OutlineMesh build(RememberedBlocks remembered, long chunkKey, BlockRenderManager blockRenderManager) {
+        int originX = ChunkSectionPos.getBlockCoord(ChunkPos.getPackedX(chunkKey));
+        int originZ = ChunkSectionPos.getBlockCoord(ChunkPos.getPackedZ(chunkKey));
+        Recorder recorder = new Recorder(blockRenderManager);
+        remembered.forEachInChunk(chunkKey, (packedPos, rawStateId) -> recorder.add(
+            BlockPos.unpackLongY(packedPos) << 8
+                | (BlockPos.unpackLongZ(packedPos) - originZ) << 4
+                | BlockPos.unpackLongX(packedPos) - originX,
+            Block.getStateFromRawId(rawStateId)));
+        return recorder.finish(null, originX, 0, originZ);
+    }
+
+    /** @return the tracked section this mesh was built for, or {@code null} for remembered blocks */
+    TrackedSection getSection() {
+        return section;
+    }
+
+    /**
+     * Estimates the heap memory retained by this mesh, for cache accounting.
+     */
+    long estimateMemoryBytes() {
+        return 64 + (offsets.length * 2L + firstSegments.length + segmentStarts.length) * Integer.BYTES
+            + segmentLayers.length * 8L + vertices.length * (long) Float.BYTES;
+    }
+
+    /**
+     * Replays the blocks inside the frustum into the outline buffers, in the
+     * colors of the current selection. Blocks no longer selected are skipped.
+     * Blocks are only tested one by one if the mesh is partly outside the frustum.
+     */
+    void render(MatrixStack matrices, Vec3d cameraPos, OutlineVertexConsumerProvider outlineConsumers,
+            Frustum frustum, BlockStateLookup lookup) {
+        if (offsets.length == 0) {
+            return;
+        }
+        Box bounds = new Box(originX, minY, originZ, originX + 16, maxY, originZ + 16);
+        boolean testBlocks = !RenderUtil.isInside(frustum, bounds);
+
+        matrices.push();
+        matrices.translate(originX - cameraPos.x, originY - cameraPos.y, originZ - cameraPos.z);
+        MatrixStack.Entry entry = matrices.peek();
+        Matrix4f positionMatrix = entry.getPositionMatrix();
+
+        RenderLayer currentLayer = null;
+        int currentColor = 0;
+        VertexConsumer consumer = null;
+        for (int block = 0; block < offsets.length; block++) {
+            int color = lookup.getColor(stateIds[block]);
+            if (color == 0 || firstSegments[block] == firstSegments[block + 1]) {
+                continue;
+            }
+
+            int offset = offsets[block];
+            int x = originX + (offset & 15);
+            int y = originY + (offset >> 8);
+            int z = originZ + (offset >>> 4 & 15);
+            if (testBlocks && !frustum.isVisible(new Box(x, y, z, x + 1, y + 1, z + 1))) {
+                continue;
+            }
+
+            for (int segment = firstSegments[block]; segment < firstSegments[block + 1]; segment++) {
+                // The outline color applies to the buffers handed out after it is set
+                if (segmentLayers[segment] != currentLayer || color != currentColor) {
+                    currentLayer = segmentLayers[segment];
+                    currentColor = color;
+                    outlineConsumers.setColor(currentColor);
+                    consumer = outlineConsumers.getBuffer(currentLayer);
+                }
+
+                for (int vertex = segmentStarts[segment]; vertex < segmentStarts[segment + 1]; vertex++) {
+                    int start = vertex * FLOATS_PER_VERTEX;
+                    consumer.vertex(positionMatrix, vertices[start], vertices[start + 1], vertices[start + 2])
+                        .color(-1)
+                        .texture(vertices[start + 3], vertices[start + 4])
+                        .overlay(OverlayTexture.DEFAULT_UV)
+                        .light(LightmapTextureManager.MAX_LIGHT_COORDINATE)
+                        .normal(entry, vertices[start + 5], vertices[start + 6], vertices[start + 7]);
+                }
+            }
+        }
+
+        matrices.pop();
+    }
+
+    /**
+     * Captures what a block model emits, as runs of vertices per render layer.
+     */
+    private static final class Recorder implements VertexConsumerProvider {
+        private final BlockRenderManager blockRenderManager;
+        private final MatrixStack matrices = new MatrixStack();
+        private final IntArrayList offsets = new IntArrayList();
+        private final IntArrayList stateIds = new IntArrayList();
+        private final IntArrayList firstSegments = new IntArrayList();
+        private final List<RenderLayer> segmentLayers = new ArrayList<>();
+        private final IntArrayList segmentStarts = new IntArrayList();
+        private final FloatArrayList vertices = new FloatArrayList();
+        private RenderLayer openLayer;
+
+        Recorder(BlockRenderManager blockRenderManager) {
+            this.blockRenderManager = blockRenderManager;
+        }
+
+        /**
+         * Records the silhouette of one block.
+         *
+         * @param offset the block's packed offset from the mesh's origin
+         */
+        void add(int offset, BlockState state) {
+            if (state.isAir()) {
+                return;
+            }
+
+            offsets.add(offset);
+            stateIds.add(Block.getRawIdFromState(state));
+            firstSegments.add(segmentLayers.size());
+            openLayer = null;
+
+            matrices.push();
+            matrices.translate(offset & 15, offset >> 8, offset >>> 4 & 15);
+            blockRenderManager.renderBlockAsEntity(
+                state,
+                matrices,
+                this,
+                LightmapTextureManager.MAX_LIGHT_COORDINATE,
+                OverlayTexture.DEFAULT_UV
+            );
+            matrices.pop();
+        }
+
+        @Override
+        public VertexConsumer getBuffer(RenderLayer layer) {
+            return new LayerRecorder(layer);
+        }
+
+        OutlineMesh finish(TrackedSection section, int originX, int originY, int originZ) {
+            firstSegments.add(segmentLayers.size());
+            segmentStarts.add(vertices.size() / FLOATS_PER_VERTEX);
+            return new OutlineMesh(
+                section,
+                originX,
+                originY,
+                originZ,
+                offsets.toIntArray(),
+                stateIds.toIntArray(),
+                firstSegments.toIntArray(),
+                segmentLayers.toArray(RenderLayer[]::new),
+                segmentStarts.toIntArray(),
+                vertices.toFloatArray()
+            );
+        }
+
+        private final class LayerRecorder implements VertexConsumer {
+            private final RenderLayer layer;
+            private int vertexOffset = -1;
+
+            LayerRecorder(RenderLayer layer) {
+                this.layer = layer;
+            }
+
+            @Override
+            public VertexConsumer vertex(float x, float y, float z) {
+                if (layer != openLayer) {
+                    openLayer = layer;
+                    segmentLayers.add(layer);
+                    segmentStarts.add(vertices.size() / FLOATS_PER_VERTEX);
+                }
+                vertexOffset = vertices.size();
+                vertices.add(x);
+                vertices.add(y);
+                vertices.add(z);
+                for (int i = 3; i < FLOATS_PER_VERTEX; i++) {
+                    vertices.add(0);
+                }
+                return this;
+            }
+
+            @Override
+            public VertexConsumer texture(float u, float v) {
+                vertices.set(vertexOffset + 3, u);
+                vertices.set(vertexOffset + 4, v);
+                return this;
+            }
+
+            @Override
+            public VertexConsumer normal(float x, float y, float z) {
+                vertices.set(vertexOffset + 5, x);
+                vertices.set(vertexOffset + 6, y);
+                vertices.set(vertexOffset + 7, z);
+                return this;
+            }
+
+            // The outline color replaces the vertex color, and outlines are drawn unlit
+            @Override
+            public VertexConsumer color(int red, int green, int blue, int alpha) {
+                return this;
+            }
+
+            @Override
+            public VertexConsumer color(int argb) {
+                return this;
+            }
+
+            @Override
+            public VertexConsumer overlay(int u, int v) {
+                return this;
+            }
+
+            @Override
+            public VertexConsumer light(int u, int v) {
+                return this;
+            }
+
+            @Override
+            public VertexConsumer lineWidth(float width) {
+                return this;
+            }
+        }
+    }
+}
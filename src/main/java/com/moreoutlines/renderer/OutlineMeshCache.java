@@ -0,0 +1,205 @@
+package com.moreoutlines.renderer;
+
+import com.moreoutlines.config.ModConfig;
+import com.moreoutlines.scanner.RememberedBlocks;
+import com.moreoutlines.scanner.TrackedBlocks;
+import com.moreoutlines.scanner.TrackedSection;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outline meshes of the tracked sections, kept across frames and rebuilt only
+ * when a section's tracked blocks change or a block update in the section
+ * marks its mesh stale. Above a memory budget, the meshes drawn least recently
+ * are dropped and rebuilt once their section is drawn again.
+ *
+ * <p>Meshes of remembered chunks are kept until the chunk's remembered blocks
+ * change, and dropped least recently drawn first above a memory budget sized
+ * from {@code maxRememberedBlocks}, as there can be far more of them than
+ * tracked sections. Meshes drawn in the current frame are never dropped, and
+ * only a few remembered chunks are tessellated per frame.
+ *
+ * <p>Meshes can also be built on the chunk builder threads and handed over
+ * through {@link #offer}; everything else is only touched on the render thread.
+ */
+final class OutlineMeshCache {
+    private static final long MAX_MESH_BYTES = 64L * 1024 * 1024;
+    // About the mesh of a full cube, 24 vertices of 8 floats
+    private static final long REMEMBERED_MESH_BYTES_PER_BLOCK = 800;
+    // Remembered chunks tessellated per frame; the rest follow over the next frames
+    private static final int MAX_REMEMBERED_BUILDS_PER_FRAME = 16;
+
+    private final Long2ObjectLinkedOpenHashMap<OutlineMesh> meshes = new Long2ObjectLinkedOpenHashMap<>();
+    private final Map<Long, OutlineMesh> builtMeshes = new ConcurrentHashMap<>();
+    private final LongSet staleSections = new LongOpenHashSet();
+    // Sections whose mesh was dropped for the budget; chunk builders would not rebuild them
+    private final LongSet evictedSections = new LongOpenHashSet();
+    private long meshBytes;
+    private final Long2ObjectLinkedOpenHashMap<OutlineMesh> rememberedMeshes = new Long2ObjectLinkedOpenHashMap<>();
+    private long rememberedMeshBytes;
+    private int rememberedBuilds;
+    private int frame;
+    private World world;
+    private TrackedBlocks trackedBlocks;
+    private RememberedBlocks remembered = RememberedBlocks.EMPTY;
+
+    /**
+     * Starts a frame, and drops the meshes of sections that are no longer
+     * tracked whenever a new snapshot is published.
+     */
+    void update(World world, TrackedBlocks trackedBlocks) {
+        frame++;
+        rememberedBuilds = 0;
+        if (world != this.world) {
+            meshes.clear();
+            builtMeshes.clear();
+            staleSections.clear();
+            evictedSections.clear();
+            meshBytes = 0;
+            rememberedMeshes.clear();
+            rememberedMeshBytes = 0;
+            this.world = world;
+        }
+        if (trackedBlocks != this.trackedBlocks) {
+            this.trackedBlocks = trackedBlocks;
+            ObjectIterator<Long2ObjectMap.Entry<OutlineMesh>> entries = Long2ObjectMaps.fastIterator(meshes);
+            while (entries.hasNext()) {
+                Long2ObjectMap.Entry<OutlineMesh> entry = entries.next();
+                if (trackedBlocks.getSection(entry.getLongKey()) == null) {
+                    meshBytes -= entry.getValue().estimateMemoryBytes();
+                    entries.remove();
+                }
+            }
+            builtMeshes.keySet().removeIf(sectionKey -> trackedBlocks.getSection(sectionKey) == null);
+            staleSections.removeIf(sectionKey -> !meshes.containsKey(sectionKey));
+            evictedSections.removeIf(sectionKey -> trackedBlocks.getSection(sectionKey) == null);
+            updateRemembered(trackedBlocks.getRemembered());
+        }
+    }
+
+    private void updateRemembered(RememberedBlocks next) {
+        if (next == remembered) {
+            return;
+        }
+        ObjectIterator<Long2ObjectMap.Entry<OutlineMesh>> entries = Long2ObjectMaps.fastIterator(rememberedMeshes);
+        while (entries.hasNext()) {
+            Long2ObjectMap.Entry<OutlineMesh> entry = entries.next();
+            if (!next.hasSameChunk(entry.getLongKey(), remembered)) {
+                rememberedMeshBytes -= entry.getValue().estimateMemoryBytes();
+                entries.remove();
+            }
+        }
+        remembered = next;
+    }
+
+    /**
+     * Marks the mesh of a section outdated, because one of its blocks changed
+     * state (a door opened, a furnace lit) or its chunk was sent again.
+     */
+    void markStale(long sectionKey) {
+        if (meshes.containsKey(sectionKey)) {
+            staleSections.add(sectionKey);
+        }
+    }
+
+    /**
+     * Hands over a mesh built on a chunk builder thread. Safe to call from any thread.
+     */
+    void offer(OutlineMesh mesh) {
+        builtMeshes.put(mesh.getSection().getSectionKey(), mesh);
+    }
+
+    /**
+     * Gets the mesh of a tracked section, preferring one handed over by a chunk
+     * builder, and building it if the section is new, changed or marked stale.
+     *
+     * @param buildIfStale whether to build a missing or outdated mesh on this
+     *                     thread; if not, it is kept until a chunk builder
+     *                     offers a new one
+     * @return the mesh, or {@code null} if there is none yet
+     */
+    OutlineMesh get(TrackedSection section, ChunkSection chunkSection, BlockRenderManager blockRenderManager,
+            boolean buildIfStale) {
+        long sectionKey = section.getSectionKey();
+        OutlineMesh mesh = meshes.getAndMoveToLast(sectionKey);
+        OutlineMesh built = builtMeshes.remove(sectionKey);
+        if (built != null && built.getSection() == section) {
+            mesh = built;
+            put(sectionKey, mesh);
+        }
+
+        boolean current = mesh != null && mesh.getSection() == section && !staleSections.contains(sectionKey);
+        if (current || !buildIfStale && !evictedSections.contains(sectionKey)) {
+            if (mesh != null) {
+                mesh.lastDrawnFrame = frame;
+            }
+            return mesh;
+        }
+        mesh = OutlineMesh.build(section, chunkSection, blockRenderManager);
+        put(sectionKey, mesh);
+        return mesh;
+    }
+
+    private void put(long sectionKey, OutlineMesh mesh) {
+        OutlineMesh previous = meshes.putAndMoveToLast(sectionKey, mesh);
+        if (previous != null) {
+            meshBytes -= previous.estimateMemoryBytes();
+        }
+        meshBytes += mesh.estimateMemoryBytes();
+        mesh.lastDrawnFrame = frame;
+        staleSections.remove(sectionKey);
+        evictedSections.remove(sectionKey);
+
+        // Drawn meshes move to the end, so the ones drawn this frame are the last to go
+        while (meshBytes > MAX_MESH_BYTES) {
+            long leastRecentKey = meshes.firstLongKey();
+            if (meshes.get(leastRecentKey).lastDrawnFrame == frame) {
+                break;
+            }
+            meshBytes -= meshes.removeFirst().estimateMemoryBytes();
+            staleSections.remove(leastRecentKey);
+            evictedSections.add(leastRecentKey);
+        }
+    }
+
+    /**
+     * Gets the mesh of a chunk's remembered blocks in the current snapshot,
+     * building it if the chunk is new or changed since.
+     *
+     * @return the mesh, or {@code null} if this frame already built enough meshes
+     */
+    OutlineMesh getRemembered(long chunkKey, BlockRenderManager blockRenderManager) {
+        OutlineMesh mesh = rememberedMeshes.getAndMoveToLast(chunkKey);
+        if (mesh == null) {
+            if (rememberedBuilds >= MAX_REMEMBERED_BUILDS_PER_FRAME) {
+                return null;
+            }
+            rememberedBuilds++;
+            mesh = OutlineMesh.build(remembered, chunkKey, blockRenderManager);
+            rememberedMeshes.putAndMoveToLast(chunkKey, mesh);
+            rememberedMeshBytes += mesh.estimateMemoryBytes();
+        }
+        mesh.lastDrawnFrame = frame;
+
+        // Drawn meshes move to the end, so the ones drawn this frame are the last to go
+        long maxBytes = ModConfig.INSTANCE.maxRememberedBlocks * REMEMBERED_MESH_BYTES_PER_BLOCK;
+        while (rememberedMeshBytes > maxBytes) {
+            OutlineMesh leastRecent = rememberedMeshes.get(rememberedMeshes.firstLongKey());
+            if (leastRecent.lastDrawnFrame == frame) {
+                break;
+            }
+            rememberedMeshBytes -= rememberedMeshes.removeFirst().estimateMemoryBytes();
+        }
+        return mesh;
+    }
+}
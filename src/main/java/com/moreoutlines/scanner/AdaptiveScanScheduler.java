@@ -0,0 +1,94 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.config.ModConfig;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.player.PlayerEntity;
+
+/**
+ * Decides on which ticks the scanner looks for new work, so scanning only
+ * spends CPU when its results can actually change.
+ *
+ * <p>The interval between runs stays within the configured bounds. It drops
+ * to the minimum while the player moves fast, grows while the player stands
+ * still and the previous run found nothing to do or the frame rate is low,
+ * and shrinks otherwise. Pending block or chunk changes are picked up after
+ * the minimum interval, however long the current interval is.
+ */
+final class AdaptiveScanScheduler {
+    // Movement per tick at or above which scans run as often as allowed (sprinting is ~0.28)
+    private static final double FAST_MOVEMENT_SQ = 0.5 * 0.5;
+    private static final double STATIONARY_MOVEMENT_SQ = 0.01 * 0.01;
+    // Below this frame rate the client is considered over its frame budget
+    private static final int MIN_FRAME_RATE = 30;
+
+    private int interval = 1;
+    private int ticksSinceRun;
+    private boolean hasRun;
+    private double lastX;
+    private double lastY;
+    private double lastZ;
+
+    /**
+     * Advances by one tick and checks whether the scanner should run on it.
+     */
+    boolean shouldRun(PlayerEntity player, boolean hasPendingChanges) {
+        ticksSinceRun++;
+        if (!hasRun) {
+            return true;
+        }
+
+        int minInterval = getMinInterval();
+        interval = Math.clamp(interval, minInterval, getMaxInterval());
+        return ticksSinceRun >= interval
+            || hasPendingChanges && ticksSinceRun >= minInterval
+            || getMovementPerTickSq(player) >= FAST_MOVEMENT_SQ;
+    }
+
+    /**
+     * Records a run and adapts the interval to it.
+     *
+     * @param changed whether the run found anything that changes the results
+     */
+    void onRun(MinecraftClient client, boolean changed) {
+        PlayerEntity player = client.player;
+        double movementSq = hasRun ? getMovementPerTickSq(player) : 0;
+
+        if (movementSq >= FAST_MOVEMENT_SQ) {
+            interval = getMinInterval();
+        } else if (client.getCurrentFps() < MIN_FRAME_RATE || movementSq < STATIONARY_MOVEMENT_SQ && !changed) {
+            interval = Math.min(getMaxInterval(), interval * 2);
+        } else {
+            interval = Math.max(getMinInterval(), interval / 2);
+        }
+
+        hasRun = true;
+        ticksSinceRun = 0;
+        lastX = player.getX();
+        lastY = player.getY();
+        lastZ = player.getZ();
+    }
+
+    /**
+     * Makes the next tick run, e.g. after the results were cleared.
+     */
+    void reset() {
+        hasRun = false;
+        interval = getMinInterval();
+    }
+
+    private double getMovementPerTickSq(PlayerEntity player) {
+        double dx = player.getX() - lastX;
+        double dy = player.getY() - lastY;
+        double dz = player.getZ() - lastZ;
+        int ticks = Math.max(1, ticksSinceRun);
+        return (dx * dx + dy * dy + dz * dz) / ((double) ticks * ticks);
+    }
+
+    private static int getMinInterval() {
+        return Math.max(1, ModConfig.INSTANCE.minScanIntervalTicks);
+    }
+
+    private static int getMaxInterval() {
+        return Math.max(getMinInterval(), ModConfig.INSTANCE.maxScanIntervalTicks);
+    }
+}
@@ -0,0 +1,363 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.block.Block;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only on-disk copy of the {@link RememberedBlockStore} of one dimension,
+ * so rejoining a familiar world starts from what was already known.
+ *
+ * <p>The file starts with a header (magic, version and block state count)
+ * followed by chunk records: the packed chunk position, the entry count and
+ * the entries in the store's 12-byte little-endian format. The last record of
+ * a chunk wins, and a record without entries removes it. Records are not tied
+ * to a selection; entries of types that are not selected are dropped on load.
+ *
+ * <p>On open, the file is memory-mapped and the latest record of every chunk is
+ * handed out as a slice of the mapping, so entries are only paged in when they
+ * are read. Files made up mostly of superseded records are compacted first.
+ *
+ * <p>Slices of an earlier mapping of the same file may still be in use, and a
+ * mapped file can be neither truncated nor replaced on every platform. So the
+ * index is kept in numbered generations of the file: a compacted or reset
+ * index is written as the next generation, and older generations are deleted
+ * once nothing maps them anymore, at the latest on a later open.
+ */
+final class BlockIndexFile implements Closeable {
+    private static final int MAGIC = 0x4D4F4249;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 12;
+    // Don't bother compacting small files
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path path;
+    private int generation;
+    private FileChannel channel;
+    private long end;
+    private Long2ObjectMap<ByteBuffer> loadedChunks = new Long2ObjectLinkedOpenHashMap<>();
+
+    private BlockIndexFile(Path path, int generation, FileChannel channel) {
+        this.path = path;
+        this.generation = generation;
+        this.channel = channel;
+    }
+
+    /**
+     * Gets where the index of a dimension is stored, before the generation
+     * number is appended.
+     */
+    static Path getPath(DimensionKey dimension) {
+        return FabricLoader.getInstance().getGameDir()
+            .resolve("more-outlines")
+            .resolve("block-index")
+            .resolve(sanitize(dimension.server()))
+            .resolve(sanitize(dimension.dimension().getValue().toString()) + ".bin");
+    }
+
+    private static String sanitize(String name) {
+        String sanitized = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        // Keep names that only differ in replaced characters apart
+        return sanitized.equals(name) ? name : sanitized + "-" + Integer.toHexString(name.hashCode());
+    }
+
+    /**
+     * Opens the latest generation of an index file, discarding its contents if
+     * they were written for another block state registry.
+     */
+    static BlockIndexFile open(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        int generation = findLatestGeneration(path);
+        BlockIndexFile file = new BlockIndexFile(path, generation, openChannel(getGenerationPath(path, generation)));
+        try {
+            file.deleteOlderGenerations();
+            if (!file.hasHeader()) {
+                file.reset();
+                return file;
+            }
+
+            Long2LongMap records = file.readRecordOffsets();
+            if (file.end > MIN_COMPACTION_BYTES && file.compact(records)) {
+                records = file.readRecordOffsets();
+            }
+            if (file.end > Integer.MAX_VALUE) {
+                // Too large to map in one piece; start over rather than grow further
+                file.reset();
+                return file;
+            }
+            file.mapRecords(records);
+            return file;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static Path getGenerationPath(Path path, int generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /** @return the highest generation of the file on disk, or 0 if there is none */
+    private static int findLatestGeneration(Path path) throws IOException {
+        int latest = 0;
+        for (Path sibling : listGenerations(path)) {
+            latest = Math.max(latest, getGeneration(path, sibling));
+        }
+        return latest;
+    }
+
+    private static List<Path> listGenerations(Path path) throws IOException {
+        List<Path> generations = new ArrayList<>();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(path.getParent(), path.getFileName() + ".*")) {
+            for (Path sibling : siblings) {
+                if (getGeneration(path, sibling) >= 0) {
+                    generations.add(sibling);
+                }
+            }
+        }
+        return generations;
+    }
+
+    /** @return the generation of a file next to the index, or -1 if it is not one */
+    private static int getGeneration(Path path, Path sibling) {
+        String suffix = sibling.getFileName().toString().substring(path.getFileName().toString().length() + 1);
+        try {
+            return Integer.parseInt(suffix);
+        } catch (NumberFormatException e) {
+            // The temporary file of an interrupted compaction
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes the generations before the current one. Those still mapped cannot
+     * be deleted on some platforms and are left for a later open.
+     */
+    private void deleteOlderGenerations() throws IOException {
+        for (Path older : listGenerations(path)) {
+            if (getGeneration(path, older) < generation) {
+                try {
+                    Files.deleteIfExists(older);
+                } catch (IOException e) {
+                    // Still mapped, deleted on a later open
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the chunks read on open, keyed by packed chunk position. The buffers
+     * are read-only slices of the mapping.
+     */
+    Long2ObjectMap<ByteBuffer> takeLoadedChunks() {
+        Long2ObjectMap<ByteBuffer> chunks = loadedChunks;
+        loadedChunks = new Long2ObjectLinkedOpenHashMap<>();
+        return chunks;
+    }
+
+    /**
+     * Appends the current entries of a chunk.
+     *
+     * @param entries the chunk's entries, or {@code null} if it was removed
+     */
+    void write(long chunkKey, ByteBuffer entries) throws IOException {
+        int bytes = entries != null ? entries.limit() : 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(chunkKey).putInt(bytes / RememberedBlockStore.ENTRY_BYTES).flip();
+
+        long position = end;
+        position += writeFully(channel, header, position);
+        if (entries != null) {
+            position += writeFully(channel, entries.duplicate().position(0), position);
+        }
+        end = position;
+    }
+
+    /**
+     * Drops all records and starts over as the next generation.
+     */
+    private void reset() throws IOException {
+        Path fresh = getTemporaryPath();
+        try (FileChannel target = FileChannel.open(fresh, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(Block.STATE_IDS.size()).flip();
+            end = writeFully(target, header, 0);
+        }
+        replaceWith(fresh);
+        loadedChunks = new Long2ObjectLinkedOpenHashMap<>();
+    }
+
+    private Path getTemporaryPath() {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Moves a completely written file in as the next generation, so an
+     * interrupted write never leaves a partial file as the latest one.
+     */
+    private void replaceWith(Path replacement) throws IOException {
+        Path next = getGenerationPath(path, generation + 1);
+        Files.move(replacement, next, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = openChannel(next);
+        generation++;
+        deleteOlderGenerations();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private boolean hasHeader() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 0);
+        return header.getInt(0) == MAGIC
+            && header.getInt(4) == VERSION
+            && header.getInt(8) == Block.STATE_IDS.size();
+    }
+
+    /**
+     * Finds the latest record of every chunk from the record headers alone, and
+     * cuts off a record left incomplete by an interrupted write.
+     *
+     * @return record offsets by packed chunk position, without removed chunks
+     */
+    private Long2LongMap readRecordOffsets() throws IOException {
+        long size = channel.size();
+        Long2LongMap records = new Long2LongLinkedOpenHashMap();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        long offset = HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, offset);
+            long chunkKey = header.getLong(0);
+            int count = header.getInt(8);
+            long recordEnd = offset + RECORD_HEADER_BYTES + (long) count * RememberedBlockStore.ENTRY_BYTES;
+            if (count < 0 || recordEnd > size) {
+                break;
+            }
+
+            // Re-inserting moves the chunk to the end, keeping records oldest first
+            records.remove(chunkKey);
+            if (count > 0) {
+                records.put(chunkKey, offset);
+            }
+            offset = recordEnd;
+        }
+
+        if (offset < size) {
+            channel.truncate(offset);
+        }
+        end = offset;
+        return records;
+    }
+
+    private long getRecordBytes(long offset) throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(count, offset + Long.BYTES);
+        return RECORD_HEADER_BYTES + (long) count.getInt(0) * RememberedBlockStore.ENTRY_BYTES;
+    }
+
+    /**
+     * Rewrites the file with only the latest record of every chunk, if most of
+     * it is superseded.
+     *
+     * @return true if the file was compacted
+     */
+    private boolean compact(Long2LongMap records) throws IOException {
+        long liveBytes = 0;
+        LongIterator offsets = records.values().iterator();
+        while (offsets.hasNext()) {
+            liveBytes += getRecordBytes(offsets.nextLong());
+        }
+        if (liveBytes * 2 >= end - HEADER_BYTES) {
+            return false;
+        }
+
+        Path compacted = getTemporaryPath();
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.transferTo(0, HEADER_BYTES, target);
+            for (Long2LongMap.Entry record : records.long2LongEntrySet()) {
+                long offset = record.getLongValue();
+                long bytes = getRecordBytes(offset);
+                long transferred = 0;
+                while (transferred < bytes) {
+                    transferred += channel.transferTo(offset + transferred, bytes - transferred, target);
+                }
+            }
+        }
+
+        replaceWith(compacted);
+        return true;
+    }
+
+    private void mapRecords(Long2LongMap records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        for (Long2LongMap.Entry record : records.long2LongEntrySet()) {
+            int offset = (int) record.getLongValue();
+            int count = mapping.getInt(offset + Long.BYTES);
+            ByteBuffer entries = mapping
+                .slice(offset + RECORD_HEADER_BYTES, count * RememberedBlockStore.ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            loadedChunks.put(record.getLongKey(), entries);
+        }
+    }
+
+    private static int writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += target.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int bytes = channel.read(buffer, position + read);
+            if (bytes < 0) {
+                throw new IOException("Unexpected end of block index " + path);
+            }
+            read += bytes;
+        }
+    }
+}
@@ -1,80 +1,616 @@
 package com.moreoutlines.scanner;
 
 import com.moreoutlines.config.ModConfig;
+import com.moreoutlines.config.ScanShape;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Frustum;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.registry.Registries;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
 
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 /**
  * Scans the world around the player for selected block types.
  * Uses a singleton pattern to maintain state across ticks.
+ *
+ * <p>The client thread decides which sections need (re)scanning, in
+ * {@link ScanPriority} order and spread over ticks as {@link ScanSweep}s, and
+ * copies their blocks; a {@link ScanWorker} scans them and publishes
+ * {@link TrackedBlocks} snapshots for the renderer and any
+ * {@link TrackedBlockListener}.
  */
 public class BlockSelectionScanner {
     private static final BlockSelectionScanner INSTANCE = new BlockSelectionScanner();
-    private static final int SCAN_RADIUS = 32;
-    
-    private final Map<Identifier, Set<BlockPos>> trackedBlocksByType = new HashMap<>();
-    
+
+    // How far the player may move before capped results are re-ranked
+    private static final double RERANK_DISTANCE_SQ = 2 * 2;
+    // Section copies a sweep holds at most before handing them over, a few megabytes
+    private static final int MAX_HELD_SECTION_COPIES = 512;
+    // Larger backlogs of queued sections are not worth sorting
+    private static final int MAX_PRIORITIZED_SECTIONS = 4096;
+
+    private final ScanWorker worker = new ScanWorker();
+    private final AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler();
+
+    // Incremental state, only touched on the client thread
+    private final LongSet pendingDirtySections = new LongOpenHashSet();
+    private final LongSet pendingRemovedSections = new LongOpenHashSet();
+    // Dirty sections in priority order, sorted again only once new ones are queued.
+    // Sections no longer pending are skipped.
+    private long[] pendingOrder = new long[0];
+    private int pendingOrderStart;
+    private boolean pendingOrderStale;
+    private ClientWorld scannedWorld;
+    private ScanVolume scannedVolume;
+    private ScanShells scannedShells;
+    private int scannedSelectionRevision = -1;
+    private BlockStateLookup lookup;
+    private ScanSweep sweep;
+    private TrackingLimits submittedLimits;
+    private DimensionKey workerDimension;
+    private Frustum viewFrustum;
+    // Block entities of the chunk snapshotted last, by section, so a column is bucketed once.
+    // Reset whenever the chunks may have changed since.
+    private WorldChunk bucketedChunk;
+    private final Int2ObjectMap<List<BlockEntity>> blockEntitiesBySection = new Int2ObjectOpenHashMap<>();
+
+    // Listeners registered, and those that received their initial changes
+    private final Set<TrackedBlockListener> registeredListeners = new HashSet<>();
+    private final List<TrackedBlockListener> listeners = new ArrayList<>();
+
     private BlockSelectionScanner() {}
-    
+
     public static BlockSelectionScanner getInstance() {
         return INSTANCE;
     }
-    
+
     public void tick(MinecraftClient client) {
+        dispatchChanges();
+        bucketedChunk = null;
+
         if (client.player == null || client.world == null) {
             return;
         }
-        
-        // Clear previous scan results
-        trackedBlocksByType.clear();
-        
-        // Get player position and world
-        BlockPos playerPos = client.player.getBlockPos();
+
+        // Get the volume around the player that should be covered
         ClientWorld world = client.world;
-        
-        // Calculate Y bounds to avoid unnecessary scanning
-        int minY = Math.max(playerPos.getY() - SCAN_RADIUS, world.getBottomY());
-        int maxY = Math.min(playerPos.getY() + SCAN_RADIUS, world.getHeight() + world.getBottomY() - 1);
-        
-        // Scan for selected blocks within radius
-        for (int x = playerPos.getX() - SCAN_RADIUS; x <= playerPos.getX() + SCAN_RADIUS; x++) {
-            for (int y = minY; y <= maxY; y++) {
-                for (int z = playerPos.getZ() - SCAN_RADIUS; z <= playerPos.getZ() + SCAN_RADIUS; z++) {
-                    BlockPos pos = new BlockPos(x, y, z);
-                    BlockState state = world.getBlockState(pos);
-                    
-                    // Skip air blocks early
-                    if (state.isAir()) {
-                        continue;
-                    }
-                    
-                    Identifier blockId = Registries.BLOCK.getId(state.getBlock());
-                    
-                    // Check if this block type is selected
-                    if (ModConfig.INSTANCE.isBlockSelected(blockId)) {
-                        trackedBlocksByType
-                            .computeIfAbsent(blockId, k -> new HashSet<>())
-                            .add(pos.toImmutable()); // Use immutable position for better memory efficiency
-                    }
+        ScanVolume volume = ScanVolume.around(world, client.player.getBlockPos(),
+            getScanRadius(client), ModConfig.INSTANCE.scanShape);
+        TrackingLimits limits = TrackingLimits.capture(client.player.getEyePos());
+
+        // A sweep started for another world or selection can only produce stale results
+        if (sweep != null && (sweep.getWorld() != world
+                || ModConfig.INSTANCE.getSelectionRevision() != scannedSelectionRevision)) {
+            sweep = null;
+        }
+
+        if (sweep == null) {
+            // Sweeps in progress keep to the per-tick budget, so only new work is scheduled.
+            // The scheduler only paces steady-state work; results made stale by a world,
+            // shape or selection change are replaced right away.
+            int defaultRadius = getDefaultRadius(client);
+            boolean invalidated = isInvalidated(world, volume, defaultRadius);
+            boolean hasPendingChanges = !pendingDirtySections.isEmpty() || !pendingRemovedSections.isEmpty();
+            if (!invalidated && !scheduler.shouldRun(client.player, hasPendingChanges)) {
+                return;
+            }
+            scheduler.onRun(client, invalidated
+                || hasPendingChanges
+                || !volume.equals(scannedVolume)
+                || needsRerank(limits));
+
+            if (invalidated || !ModConfig.INSTANCE.incrementalScanning) {
+                startSweep(client, world, volume, limits);
+            } else if (!volume.equals(scannedVolume)) {
+                if (isPacketDriven() && !scannedShells.isNested()) {
+                    // Chunk loads and unloads already cover what moving changes
+                    scannedVolume = volume;
+                } else {
+                    moveVolume(volume);
                 }
             }
         }
+
+        long deadline = System.nanoTime() + Math.max(1, ModConfig.INSTANCE.scanBudgetMicros) * 1000L;
+        if (sweep != null) {
+            if (!sweep.advance(deadline, this::snapshotSection)) {
+                // Streaming sweeps hand over every tick, others once they hold enough copies.
+                // Sections not covered yet keep their previous results until the sweep completes.
+                boolean handOver = sweep.isStreaming()
+                    ? !sweep.getSnapshots().isEmpty()
+                    : sweep.getCopyCount() >= MAX_HELD_SECTION_COPIES;
+                if (handOver) {
+                    submit(new ScanBatch(false, lookup, sweep.takeSnapshots(), LongSets.EMPTY_SET, limits));
+                }
+                return;
+            }
+            finishSweep(limits);
+        }
+
+        if (!applyPendingChanges(world, deadline, limits, getScanPriority(client)) && needsRerank(limits)) {
+            submit(new ScanBatch(false, lookup, List.of(), LongSets.EMPTY_SET, limits));
+        }
+    }
+
+    /**
+     * Checks whether the published results are ranked for outdated caps or a
+     * position too far from the player.
+     */
+    private boolean needsRerank(TrackingLimits limits) {
+        if (submittedLimits == null) {
+            return false;
+        }
+        if (!limits.hasSameCaps(submittedLimits)) {
+            return true;
+        }
+        return !limits.isUnlimited()
+            && limits.origin().squaredDistanceTo(submittedLimits.origin()) > RERANK_DISTANCE_SQ;
+    }
+
+    private void submit(ScanBatch batch) {
+        worker.submit(batch);
+        submittedLimits = batch.limits();
+    }
+
+    /**
+     * Checks whether the previous results can no longer be patched incrementally.
+     */
+    private boolean isInvalidated(ClientWorld world, ScanVolume volume, int defaultRadius) {
+        return world != scannedWorld
+            || !volume.hasSameShape(scannedVolume)
+            || scannedShells.getDefaultRadius() != defaultRadius
+            || ModConfig.INSTANCE.getSelectionRevision() != scannedSelectionRevision;
     }
-    
-    public Map<Identifier, Set<BlockPos>> getTrackedBlocksByType() {
-        return trackedBlocksByType;
+
+    /**
+     * Checks whether the index is maintained from chunk and block update packets
+     * rather than from the player's movement.
+     */
+    private static boolean isPacketDriven() {
+        return ModConfig.INSTANCE.incrementalScanning && ModConfig.INSTANCE.scanShape == ScanShape.RENDER_DISTANCE;
     }
-    
+
+    /**
+     * Gets the radius of the whole scan volume: the largest radius of any
+     * selected type, or the render distance for that shape.
+     */
+    private static int getScanRadius(MinecraftClient client) {
+        if (ModConfig.INSTANCE.scanShape == ScanShape.RENDER_DISTANCE) {
+            return getDefaultRadius(client);
+        }
+        return Math.max(ModConfig.INSTANCE.scanRadius, BlockStateLookup.get().getMaxRadius());
+    }
+
+    /**
+     * Gets the radius of selected types without their own, the configured scan
+     * radius or the render distance for that shape.
+     */
+    private static int getDefaultRadius(MinecraftClient client) {
+        if (ModConfig.INSTANCE.scanShape == ScanShape.RENDER_DISTANCE) {
+            return client.options.getClampedViewDistance() * 16;
+        }
+        return ModConfig.INSTANCE.scanRadius;
+    }
+
+    private void startSweep(MinecraftClient client, ClientWorld world, ScanVolume volume, TrackingLimits limits) {
+        // Results of another world are of no use here, so stream them as they come
+        boolean streaming = world != scannedWorld;
+        if (world != scannedWorld) {
+            pendingDirtySections.clear();
+            pendingRemovedSections.clear();
+        }
+
+        if (ModConfig.INSTANCE.getSelectionRevision() != scannedSelectionRevision) {
+            lookup = BlockStateLookup.get();
+            scannedSelectionRevision = ModConfig.INSTANCE.getSelectionRevision();
+        }
+
+        // Keep the results of the dimension being left, and show any kept for
+        // the new one until the sweep has reconciled them
+        DimensionKey dimension = DimensionKey.of(client, world);
+        if (!dimension.equals(workerDimension)) {
+            workerDimension = dimension;
+            Path indexPath = ModConfig.INSTANCE.rememberBlocks && ModConfig.INSTANCE.persistBlockIndex
+                ? BlockIndexFile.getPath(dimension)
+                : null;
+            worker.switchDimension(dimension, lookup, getMaxCacheBytes(), indexPath, limits);
+        }
+
+        ScanShells shells = ScanShells.of(volume, lookup, getDefaultRadius(client));
+        sweep = new ScanSweep(world, shells, getScanPriority(client), streaming);
+    }
+
+    private static long getMaxCacheBytes() {
+        return Math.max(0, ModConfig.INSTANCE.dimensionCacheMegabytes) * 1024L * 1024L;
+    }
+
+    /**
+     * Hands a completed sweep to the worker, replacing all previous results.
+     */
+    private void finishSweep(TrackingLimits limits) {
+        scannedWorld = sweep.getWorld();
+        scannedVolume = sweep.getVolume();
+        scannedShells = sweep.getShells();
+
+        submit(new ScanBatch(true, lookup, sweep.getSnapshots(), LongSets.EMPTY_SET, limits,
+            sweep.getStreamedSections()));
+        sweep = null;
+    }
+
+    /**
+     * Shifts the scan volume after the player moved into another section: results
+     * for the overlapping sections are kept, sections that entered the volume are
+     * queued for scanning and sections that left it are evicted. Sections that
+     * moved to another shell are queued too, as they are scanned for other types.
+     */
+    private void moveVolume(ScanVolume volume) {
+        ScanVolume previous = scannedVolume;
+        ScanShells previousShells = scannedShells;
+        ScanShells shells = previousShells.moveTo(volume);
+        scannedVolume = volume;
+        scannedShells = shells;
+
+        // Chunk loads and unloads already cover the render distance shape's volume
+        if (!isPacketDriven()) {
+            volume.forEachSection(sectionKey -> {
+                if (!previous.intersectsSection(sectionKey)) {
+                    pendingRemovedSections.remove(sectionKey);
+                    markDirty(sectionKey);
+                }
+            });
+
+            previous.forEachSection(sectionKey -> {
+                if (!volume.intersectsSection(sectionKey)) {
+                    pendingDirtySections.remove(sectionKey);
+                    pendingRemovedSections.add(sectionKey);
+                }
+            });
+        }
+
+        LongConsumer reshell = sectionKey -> {
+            if (previousShells.getShell(sectionKey) != shells.getShell(sectionKey)
+                    && (isPacketDriven() || volume.intersectsSection(sectionKey))) {
+                markDirty(sectionKey);
+            }
+        };
+        shells.forEachInnerSection(reshell);
+        previousShells.forEachInnerSection(reshell);
+    }
+
+    private void markDirty(long sectionKey) {
+        if (pendingDirtySections.add(sectionKey)) {
+            pendingOrderStale = true;
+        }
+    }
+
+    /**
+     * Resubmits the sections that changed or entered the scan volume, within the
+     * remaining tick budget, in priority order. At least one section is handled
+     * per call, and sections left over are handled on the next tick.
+     *
+     * @return true if a batch was submitted
+     */
+    private boolean applyPendingChanges(ClientWorld world, long deadlineNanos, TrackingLimits limits,
+            ScanPriority priority) {
+        if (pendingDirtySections.isEmpty() && pendingRemovedSections.isEmpty()) {
+            return false;
+        }
+
+        if (pendingOrderStale) {
+            pendingOrder = pendingDirtySections.toLongArray();
+            pendingOrderStart = 0;
+            pendingOrderStale = false;
+            if (pendingOrder.length <= MAX_PRIORITIZED_SECTIONS) {
+                long[] priorities = new long[pendingOrder.length];
+                for (int i = 0; i < pendingOrder.length; i++) {
+                    priorities[i] = priority.getSectionPriority(pendingOrder[i]);
+                }
+                LongArrays.quickSort(priorities, pendingOrder);
+            }
+        }
+
+        List<ScanBatch.SectionSnapshot> snapshots = new ArrayList<>();
+        boolean applied = false;
+        while (pendingOrderStart < pendingOrder.length && (!applied || System.nanoTime() < deadlineNanos)) {
+            long sectionKey = pendingOrder[pendingOrderStart++];
+            if (!pendingDirtySections.remove(sectionKey)) {
+                continue;
+            }
+            applied = true;
+
+            if (!isPacketDriven() && !scannedVolume.intersectsSection(sectionKey)) {
+                continue;
+            }
+
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(
+                ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackZ(sectionKey));
+            snapshots.add(chunk == null
+                ? ScanBatch.SectionSnapshot.empty(sectionKey)
+                : snapshotSection(chunk, ChunkSectionPos.unpackY(sectionKey), scannedShells.getLookup(sectionKey)));
+        }
+
+        submit(new ScanBatch(false, lookup, snapshots, new LongOpenHashSet(pendingRemovedSections), limits));
+        pendingRemovedSections.clear();
+        return true;
+    }
+
+    /**
+     * Copies a section's block states for the worker, unless its palette shows it
+     * cannot contain a block of the section's selection.
+     *
+     * @param lookup the selection of the section's shell
+     */
+    private ScanBatch.SectionSnapshot snapshotSection(WorldChunk chunk, int sectionY, BlockStateLookup lookup) {
+        ChunkPos chunkPos = chunk.getPos();
+        long sectionKey = ChunkSectionPos.asLong(chunkPos.x, sectionY, chunkPos.z);
+        if (lookup.isBlockEntityOnly()) {
+            return snapshotBlockEntities(chunk, sectionKey, sectionY, lookup);
+        }
+
+        ChunkSection section = chunk.getSection(chunk.sectionCoordToIndex(sectionY));
+
+        // The palette lists every state the section may contain, so a section
+        // whose palette has no selected state cannot hold a match
+        if (section.isEmpty() || !section.hasAny(lookup::matches)) {
+            return ScanBatch.SectionSnapshot.empty(sectionKey);
+        }
+
+        return new ScanBatch.SectionSnapshot(sectionKey, section.getBlockStateContainer().copy(), lookup, null);
+    }
+
+    /**
+     * Resolves a section's matches from the chunk's block entities, which is
+     * enough when every selected block has one. Chunks hold few block entities,
+     * so this is far cheaper than copying and scanning the section.
+     */
+    private ScanBatch.SectionSnapshot snapshotBlockEntities(WorldChunk chunk, long sectionKey, int sectionY,
+            BlockStateLookup lookup) {
+        TrackedSection.Builder builder = new TrackedSection.Builder(sectionKey);
+        for (BlockEntity blockEntity : getBlockEntities(chunk, sectionY)) {
+            BlockPos pos = blockEntity.getPos();
+            int rawId = Block.getRawIdFromState(blockEntity.getCachedState());
+            Identifier type = lookup.getType(rawId);
+            if (type != null) {
+                builder.add(TrackedSection.getLocalIndex(pos.getX(), pos.getY(), pos.getZ()), type);
+            }
+        }
+
+        TrackedSection matches = builder.build();
+        return matches == null
+            ? ScanBatch.SectionSnapshot.empty(sectionKey)
+            : new ScanBatch.SectionSnapshot(sectionKey, null, null, matches);
+    }
+
+    /**
+     * Gets the block entities of one section, bucketing the chunk's block
+     * entities by section when a new chunk is visited.
+     */
+    private List<BlockEntity> getBlockEntities(WorldChunk chunk, int sectionY) {
+        if (chunk != bucketedChunk) {
+            bucketedChunk = chunk;
+            blockEntitiesBySection.clear();
+            for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+                blockEntitiesBySection.computeIfAbsent(ChunkSectionPos.getSectionCoord(blockEntity.getPos().getY()),
+                    k -> new ArrayList<>()).add(blockEntity);
+            }
+        }
+        List<BlockEntity> blockEntities = blockEntitiesBySection.get(sectionY);
+        return blockEntities != null ? blockEntities : List.of();
+    }
+
+    /**
+     * Gets the volume block changes in the given world should be recorded for,
+     * preferring the sweep in progress over the last completed one.
+     */
+    private ScanVolume getTrackedVolume(ClientWorld world) {
+        if (sweep != null && sweep.getWorld() == world) {
+            return sweep.getVolume();
+        }
+        return world == scannedWorld ? scannedVolume : null;
+    }
+
+    /**
+     * Records a client-side block change (single block or chunk delta update).
+     * Changes between two unselected states cannot affect the results and are ignored.
+     */
+    public void onBlockUpdate(ClientWorld world, BlockPos pos, BlockState oldState, BlockState newState) {
+        BlockStateLookup lookup = BlockStateLookup.get();
+        if (!lookup.matches(oldState) && !lookup.matches(newState)) {
+            return;
+        }
+
+        ScanVolume volume = getTrackedVolume(world);
+        long sectionKey = ChunkSectionPos.toLong(pos);
+        if (volume != null && (isPacketDriven() || volume.intersectsSection(sectionKey))) {
+            // Coalesced per tick, as a chunk delta packet touches many blocks at once
+            markDirty(sectionKey);
+        }
+    }
+
+    /**
+     * Records a chunk that was loaded (or replaced by a fresh chunk data packet).
+     */
+    public void onChunkLoad(ClientWorld world, WorldChunk chunk) {
+        ScanVolume volume = getTrackedVolume(world);
+        if (volume == null) {
+            return;
+        }
+
+        ChunkPos chunkPos = chunk.getPos();
+        if (canSubmitImmediately(world)) {
+            // A chunk data packet may refill a chunk that was bucketed before
+            bucketedChunk = null;
+            // Index the freshly deserialized sections right away, so the chunk's
+            // outlines are usually published before its meshes are even built
+            List<ScanBatch.SectionSnapshot> snapshots = new ArrayList<>();
+            ChunkSection[] sections = chunk.getSectionArray();
+            for (int index = 0; index < sections.length; index++) {
+                int sectionY = chunk.sectionIndexToCoord(index);
+                long sectionKey = ChunkSectionPos.asLong(chunkPos.x, sectionY, chunkPos.z);
+                pendingDirtySections.remove(sectionKey);
+                pendingRemovedSections.remove(sectionKey);
+                snapshots.add(snapshotSection(chunk, sectionY, scannedShells.getLookup(sectionKey)));
+            }
+            submit(new ScanBatch(false, lookup, snapshots, LongSets.EMPTY_SET, submittedLimits));
+            return;
+        }
+
+        // Rescanning replaces whatever the sections held before the chunk was (re)sent
+        volume.forEachSectionInChunk(chunkPos.x, chunkPos.z, sectionKey -> {
+            pendingRemovedSections.remove(sectionKey);
+            markDirty(sectionKey);
+        });
+    }
+
+    /**
+     * Drops tracked positions of a chunk that is being unloaded.
+     */
+    public void onChunkUnload(ClientWorld world, WorldChunk chunk) {
+        ScanVolume volume = getTrackedVolume(world);
+        if (volume == null) {
+            return;
+        }
+
+        ChunkPos chunkPos = chunk.getPos();
+        if (canSubmitImmediately(world)) {
+            LongSet removedSections = new LongOpenHashSet();
+            int sectionCount = chunk.getSectionArray().length;
+            for (int index = 0; index < sectionCount; index++) {
+                long sectionKey = ChunkSectionPos.asLong(chunkPos.x, chunk.sectionIndexToCoord(index), chunkPos.z);
+                pendingDirtySections.remove(sectionKey);
+                pendingRemovedSections.remove(sectionKey);
+                removedSections.add(sectionKey);
+            }
+            submit(new ScanBatch(false, lookup, List.of(), removedSections, submittedLimits));
+            return;
+        }
+
+        volume.forEachSectionInChunk(chunkPos.x, chunkPos.z, sectionKey -> {
+            pendingDirtySections.remove(sectionKey);
+            pendingRemovedSections.add(sectionKey);
+        });
+    }
+
+    /**
+     * Checks whether chunk packets can be applied to the published results
+     * directly. While a sweep runs its results would replace them, so changes
+     * are queued until it completes instead.
+     */
+    private boolean canSubmitImmediately(ClientWorld world) {
+        return isPacketDriven() && sweep == null && world == scannedWorld && submittedLimits != null;
+    }
+
+    /**
+     * Registers a listener for the changes of the tracked blocks. Must be called
+     * from the client thread.
+     */
+    public void addListener(TrackedBlockListener listener) {
+        if (registeredListeners.add(listener)) {
+            worker.addListener(listener);
+        }
+    }
+
+    public void removeListener(TrackedBlockListener listener) {
+        if (registeredListeners.remove(listener)) {
+            listeners.remove(listener);
+            worker.removeListener();
+        }
+    }
+
+    /**
+     * Delivers the changes the worker queued since the previous tick.
+     */
+    private void dispatchChanges() {
+        ScanWorker.ChangeEvent event;
+        while ((event = worker.pollChanges()) != null) {
+            if (event.listener() != null) {
+                // A new listener joins the broadcasts after its initial changes
+                if (registeredListeners.contains(event.listener()) && !listeners.contains(event.listener())) {
+                    listeners.add(event.listener());
+                    event.listener().onTrackedBlocksChanged(event.changes());
+                }
+                continue;
+            }
+            for (TrackedBlockListener listener : listeners) {
+                listener.onTrackedBlocksChanged(event.changes());
+            }
+        }
+    }
+
+    /**
+     * Records the camera frustum of the frame being rendered, to scan what is
+     * in view first.
+     */
+    public void setViewFrustum(Frustum frustum) {
+        viewFrustum = new Frustum(frustum);
+    }
+
+    private ScanPriority getScanPriority(MinecraftClient client) {
+        return new ScanPriority(viewFrustum, client.player.getEyePos(), client.player.getRotationVec(1.0F));
+    }
+
+    /**
+     * Gets the latest complete scan result. Safe to call from any thread.
+     */
+    public TrackedBlocks getTrackedBlocks() {
+        return worker.getPublished();
+    }
+
+    /**
+     * Leaves the current world: its results are cached and written to its block
+     * index, if enabled, and scanning starts over on the next join.
+     */
+    public void onDisconnect() {
+        if (workerDimension != null) {
+            worker.switchDimension(null, lookup, getMaxCacheBytes(), null, TrackingLimits.capture(Vec3d.ZERO));
+        }
+
+        scheduler.reset();
+        sweep = null;
+        pendingDirtySections.clear();
+        pendingRemovedSections.clear();
+        scannedWorld = null;
+        scannedVolume = null;
+        scannedShells = null;
+        submittedLimits = null;
+        workerDimension = null;
+        viewFrustum = null;
+    }
+
     public void clearTrackedPositions() {
-        trackedBlocksByType.clear();
+        if (scannedWorld == null && sweep == null) {
+            return;
+        }
+
+        worker.clear();
+        scheduler.reset();
+        sweep = null;
+        pendingDirtySections.clear();
+        pendingRemovedSections.clear();
+        scannedWorld = null;
+        scannedVolume = null;
+        scannedShells = null;
+        submittedLimits = null;
+        workerDimension = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,199 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.config.ModConfig;
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ColorHelper;
+
+/**
+ * The current block selection compiled into flat tables indexed by raw
+ * block-state id, so matching a state costs a single array read.
+ *
+ * <p>Instances are immutable and safe to share with the scan worker threads.
+ * {@link #get()} recompiles the table only when the {@link ModConfig}
+ * selections or their colors change. Scan results only depend on the
+ * selected types, so colors are looked up from the current table when drawn
+ * and a recolor never needs a rescan.
+ *
+ * <p>When every selected block has a block entity, matches can be found from
+ * the chunks' block entity maps alone, see {@link #isBlockEntityOnly()}.
+ *
+ * <p>Selected blocks may have their own scan radius. {@link #withinRadius}
+ * derives the narrower lookups used for the outer shells of the scan volume,
+ * where only the types with a large enough radius are looked for.
+ */
+public final class BlockStateLookup {
+    private static BlockStateLookup current;
+
+    private final int revision;
+    private final int colorRevision;
+    private final int[] colors;
+    private final Identifier[] types;
+    private final int[] radii;
+    // States whose type has its own cap or scan radius
+    private final boolean[] limited;
+    private final int maxRadius;
+    private final boolean blockEntityOnly;
+
+    private BlockStateLookup(int revision, int colorRevision, int[] colors, Identifier[] types, int[] radii,
+            boolean[] limited, int maxRadius, boolean blockEntityOnly) {
+        this.revision = revision;
+        this.colorRevision = colorRevision;
+        this.colors = colors;
+        this.types = types;
+        this.radii = radii;
+        this.limited = limited;
+        this.maxRadius = maxRadius;
+        this.blockEntityOnly = blockEntityOnly;
+    }
+
+    /**
+     * Gets the lookup for the current configuration, recompiling it if the
+     * selections changed. Must be called from the client thread.
+     */
+    public static BlockStateLookup get() {
+        int revision = ModConfig.INSTANCE.getSelectionRevision();
+        int colorRevision = ModConfig.INSTANCE.getBlockColorRevision();
+        if (current == null || current.revision != revision || current.colorRevision != colorRevision) {
+            current = compile(revision, colorRevision);
+        }
+        return current;
+    }
+
+    private static BlockStateLookup compile(int revision, int colorRevision) {
+        int stateCount = Block.STATE_IDS.size();
+        int[] colors = new int[stateCount];
+        Identifier[] types = new Identifier[stateCount];
+        int[] radii = new int[stateCount];
+        boolean[] limited = new boolean[stateCount];
+        int maxRadius = 0;
+        boolean empty = true;
+        boolean blockEntityOnly = true;
+
+        for (Block block : Registries.BLOCK) {
+            Identifier blockId = Registries.BLOCK.getId(block);
+            if (!ModConfig.INSTANCE.isBlockSelected(blockId)) {
+                continue;
+            }
+
+            // Full alpha keeps every selected color distinct from the "not selected" 0
+            int color = ColorHelper.fullAlpha(ModConfig.INSTANCE.getBlockColor(blockId));
+            int radius = getRadius(blockId);
+            boolean typeLimited = radius > 0 || ModConfig.INSTANCE.selectedBlocks.get(blockId).maxBlocks > 0;
+            maxRadius = Math.max(maxRadius, radius);
+            for (BlockState state : block.getStateManager().getStates()) {
+                if (state.isAir()) {
+                    continue;
+                }
+                int rawId = Block.getRawIdFromState(state);
+                colors[rawId] = color;
+                types[rawId] = blockId;
+                radii[rawId] = radius;
+                limited[rawId] = typeLimited;
+                empty = false;
+                blockEntityOnly &= state.hasBlockEntity();
+            }
+        }
+
+        return new BlockStateLookup(revision, colorRevision, colors, types, radii, limited, maxRadius,
+            blockEntityOnly && !empty);
+    }
+
+    /** @return the type's own scan radius, or 0 if it uses the global one */
+    private static int getRadius(Identifier blockId) {
+        ModConfig.OutlineConfig config = ModConfig.INSTANCE.selectedBlocks.get(blockId);
+        if (config == null || config.radius <= 0) {
+            return 0;
+        }
+        return Math.clamp(config.radius, ModConfig.MIN_SCAN_RADIUS, ModConfig.MAX_SCAN_RADIUS);
+    }
+
+    /**
+     * Gets the distinct scan radii of the selected types, smallest first.
+     *
+     * @param defaultRadius the radius of types without their own
+     */
+    IntSortedSet getRadii(int defaultRadius) {
+        IntSortedSet result = new IntAVLTreeSet();
+        for (int rawId = 0; rawId < colors.length; rawId++) {
+            if (colors[rawId] != 0) {
+                result.add(radii[rawId] > 0 ? radii[rawId] : defaultRadius);
+            }
+        }
+        return result;
+    }
+
+    /** @return the largest radius set on a selected type, or 0 if none has one */
+    public int getMaxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * Derives the lookup of the types whose scan radius reaches at least the
+     * given distance.
+     *
+     * @param defaultRadius the radius of types without their own
+     */
+    BlockStateLookup withinRadius(int reach, int defaultRadius) {
+        int[] shellColors = new int[colors.length];
+        Identifier[] shellTypes = new Identifier[types.length];
+        boolean shellEmpty = true;
+        boolean shellBlockEntityOnly = true;
+        for (int rawId = 0; rawId < colors.length; rawId++) {
+            int radius = radii[rawId] > 0 ? radii[rawId] : defaultRadius;
+            if (colors[rawId] != 0 && radius >= reach) {
+                shellColors[rawId] = colors[rawId];
+                shellTypes[rawId] = types[rawId];
+                shellEmpty = false;
+                shellBlockEntityOnly &= Block.getStateFromRawId(rawId).hasBlockEntity();
+            }
+        }
+        return new BlockStateLookup(revision, colorRevision, shellColors, shellTypes, radii, limited, maxRadius,
+            shellBlockEntityOnly && !shellEmpty);
+    }
+
+    /**
+     * @return the selection revision this lookup was compiled for; it does not
+     *         change with the colors
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /** @return the outline color for the state, or 0 if it is not selected */
+    public int getColor(BlockState state) {
+        return getColor(Block.getRawIdFromState(state));
+    }
+
+    /** @return the outline color for the raw state id, or 0 if it is not selected */
+    public int getColor(int rawId) {
+        return rawId >= 0 && rawId < colors.length ? colors[rawId] : 0;
+    }
+
+    /** @return the selected block type of the raw state id, or null if it is not selected */
+    public Identifier getType(int rawId) {
+        return rawId >= 0 && rawId < types.length ? types[rawId] : null;
+    }
+
+    /**
+     * @return true if the state's type has its own cap or scan radius, so only
+     *         its tracked blocks may be outlined
+     */
+    public boolean isLimited(BlockState state) {
+        int rawId = Block.getRawIdFromState(state);
+        return rawId >= 0 && rawId < limited.length && limited[rawId];
+    }
+
+    public boolean matches(BlockState state) {
+        return getColor(state) != 0;
+    }
+
+    /** @return true if every selected block state has a block entity */
+    public boolean isBlockEntityOnly() {
+        return blockEntityOnly;
+    }
+}
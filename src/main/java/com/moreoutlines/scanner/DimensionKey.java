@@ -0,0 +1,35 @@
+package com.moreoutlines.scanner;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.world.World;
+
+import java.nio.file.Path;
+
+/**
+ * Identifies a dimension of a particular server or singleplayer world, so
+ * results for it can be kept while the player is elsewhere.
+ *
+ * @param server    the server address, or the save directory in singleplayer
+ * @param dimension the dimension's registry key
+ */
+record DimensionKey(String server, RegistryKey<World> dimension) {
+
+    static DimensionKey of(MinecraftClient client, ClientWorld world) {
+        ServerInfo serverInfo = client.getCurrentServerEntry();
+        String server;
+        if (serverInfo != null) {
+            server = serverInfo.address;
+        } else if (client.getServer() != null) {
+            // Level names are editable and default to the same name, save directories are unique
+            Path saveDirectory = client.getServer().getSavePath(WorldSavePath.ROOT).normalize();
+            server = "singleplayer:" + saveDirectory.getFileName();
+        } else {
+            server = "unknown";
+        }
+        return new DimensionKey(server, world.getRegistryKey());
+    }
+}
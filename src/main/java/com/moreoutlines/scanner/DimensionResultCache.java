@@ -0,0 +1,75 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Scan results of the dimensions the player recently left, kept under a memory
+ * cap with the least recently used dimension evicted first.
+ *
+ * <p>Only touched on the scan worker thread.
+ */
+final class DimensionResultCache {
+    // Rough heap cost of a map entry holding a section
+    private static final long ENTRY_OVERHEAD_BYTES = 48;
+
+    private record Entry(Long2ObjectMap<TrackedSection> sections, int selectionRevision, long memoryBytes) {
+    }
+
+    private final Map<DimensionKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    /**
+     * Stores the results of a dimension, evicting the least recently used
+     * dimensions until the cache fits the cap again.
+     */
+    void put(DimensionKey key, Long2ObjectMap<TrackedSection> sections, int selectionRevision, long maxMemoryBytes) {
+        remove(key);
+        if (sections.isEmpty()) {
+            return;
+        }
+
+        long entryBytes = 0;
+        for (TrackedSection section : sections.values()) {
+            entryBytes += section.estimateMemoryBytes() + ENTRY_OVERHEAD_BYTES;
+        }
+        if (entryBytes > maxMemoryBytes) {
+            return;
+        }
+
+        entries.put(key, new Entry(sections, selectionRevision, entryBytes));
+        memoryBytes += entryBytes;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            memoryBytes -= iterator.next().memoryBytes();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Takes the results of a dimension out of the cache.
+     *
+     * @return the results, or {@code null} if none are cached for the current selection
+     */
+    Long2ObjectMap<TrackedSection> take(DimensionKey key, int selectionRevision) {
+        Entry entry = remove(key);
+        return entry != null && entry.selectionRevision() == selectionRevision ? entry.sections() : null;
+    }
+
+    void clear() {
+        entries.clear();
+        memoryBytes = 0;
+    }
+
+    private Entry remove(DimensionKey key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            memoryBytes -= entry.memoryBytes();
+        }
+        return entry;
+    }
+}
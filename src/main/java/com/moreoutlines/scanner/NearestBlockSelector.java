@@ -0,0 +1,209 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the tracked blocks nearest to the origin of some {@link TrackingLimits}.
+ *
+ * <p>Every cap is enforced with a bounded max-heap keyed by squared distance, so
+ * ranking n tracked blocks against a cap of N costs O(n log N) and never holds
+ * more than N candidates. Per-type caps are applied first and their survivors
+ * then compete for the global cap. Sections lying entirely farther away than
+ * the farthest entry of a full heap are skipped without visiting their blocks.
+ */
+final class NearestBlockSelector {
+    private NearestBlockSelector() {}
+
+    static Long2ObjectMap<TrackedSection> select(Long2ObjectMap<TrackedSection> sections, TrackingLimits limits) {
+        Vec3d origin = limits.origin();
+        BlockHeap global = new BlockHeap(limits.maxBlocks() > 0 ? limits.maxBlocks() : Integer.MAX_VALUE);
+        Map<Identifier, BlockHeap> typeHeaps = new HashMap<>();
+
+        // Heap entries refer to types by index to stay primitive
+        Object2IntMap<Identifier> typeIndices = new Object2IntOpenHashMap<>();
+        typeIndices.defaultReturnValue(-1);
+        List<Identifier> types = new ArrayList<>();
+
+        for (TrackedSection section : sections.values()) {
+            double sectionDistance = section.getDistanceSq(origin);
+
+            for (int paletteIndex = 0; paletteIndex < section.getTypeCount(); paletteIndex++) {
+                Identifier type = section.getType(paletteIndex);
+                Integer typeCap = limits.maxBlocksByType().get(type);
+                BlockHeap heap = typeCap == null ? global : typeHeaps.computeIfAbsent(type, k -> new BlockHeap(typeCap));
+                if (heap.isFull() && sectionDistance >= heap.getFarthestDistance()) {
+                    continue;
+                }
+
+                int typeIndex = typeIndices.getInt(type);
+                if (typeIndex < 0) {
+                    typeIndex = types.size();
+                    typeIndices.put(type, typeIndex);
+                    types.add(type);
+                }
+
+                for (int index = section.nextBlock(paletteIndex, 0); index >= 0; index = section.nextBlock(paletteIndex, index + 1)) {
+                    int x = section.getBlockX(index);
+                    int y = section.getBlockY(index);
+                    int z = section.getBlockZ(index);
+                    heap.offer(getBlockDistanceSq(x, y, z, origin), BlockPos.asLong(x, y, z), typeIndex);
+                }
+            }
+        }
+
+        for (BlockHeap typeHeap : typeHeaps.values()) {
+            for (int i = 0; i < typeHeap.size(); i++) {
+                global.offer(typeHeap.getDistance(i), typeHeap.getPosition(i), typeHeap.getType(i));
+            }
+        }
+
+        Long2ObjectMap<TrackedSection.Builder> builders = new Long2ObjectOpenHashMap<>();
+        Long2IntOpenHashMap selectedCounts = new Long2IntOpenHashMap();
+        for (int i = 0; i < global.size(); i++) {
+            long packed = global.getPosition(i);
+            int x = BlockPos.unpackLongX(packed);
+            int y = BlockPos.unpackLongY(packed);
+            int z = BlockPos.unpackLongZ(packed);
+            long sectionKey = ChunkSectionPos.asLong(
+                ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(y), ChunkSectionPos.getSectionCoord(z));
+
+            TrackedSection.Builder builder = builders.get(sectionKey);
+            if (builder == null) {
+                builder = new TrackedSection.Builder(sectionKey);
+                builders.put(sectionKey, builder);
+            }
+            int typeIndex = global.getType(i);
+            builder.add(TrackedSection.getLocalIndex(x, y, z), types.get(typeIndex));
+            selectedCounts.addTo(sectionKey, 1);
+        }
+
+        Long2ObjectMap<TrackedSection> selected = new Long2ObjectOpenHashMap<>(builders.size());
+        for (Long2ObjectMap.Entry<TrackedSection.Builder> entry : builders.long2ObjectEntrySet()) {
+            long sectionKey = entry.getLongKey();
+            TrackedSection original = sections.get(sectionKey);
+            // Sections kept whole stay the same instance, so consumers can tell they did not change
+            selected.put(sectionKey, selectedCounts.get(sectionKey) == original.getBlockCount()
+                ? original
+                : entry.getValue().build());
+        }
+        return selected;
+    }
+
+    private static double getBlockDistanceSq(int x, int y, int z, Vec3d origin) {
+        double dx = x + 0.5 - origin.x;
+        double dy = y + 0.5 - origin.y;
+        double dz = z + 0.5 - origin.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Max-heap of block candidates by distance, holding at most {@code capacity}
+     * of the nearest ones offered.
+     */
+    private static final class BlockHeap {
+        private final int capacity;
+        private double[] distances = new double[64];
+        private long[] positions = new long[64];
+        private int[] types = new int[64];
+        private int size;
+
+        BlockHeap(int capacity) {
+            this.capacity = capacity;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        double getFarthestDistance() {
+            return distances[0];
+        }
+
+        double getDistance(int i) {
+            return distances[i];
+        }
+
+        long getPosition(int i) {
+            return positions[i];
+        }
+
+        int getType(int i) {
+            return types[i];
+        }
+
+        void offer(double distance, long position, int type) {
+            if (size < capacity) {
+                if (size == distances.length) {
+                    int length = (int) Math.min(capacity, (long) size * 2);
+                    distances = Arrays.copyOf(distances, length);
+                    positions = Arrays.copyOf(positions, length);
+                    types = Arrays.copyOf(types, length);
+                }
+                set(size, distance, position, type);
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                // Replace the farthest candidate
+                set(0, distance, position, type);
+                siftDown(0);
+            }
+        }
+
+        private void set(int i, double distance, long position, int type) {
+            distances[i] = distance;
+            positions[i] = position;
+            types[i] = type;
+        }
+
+        private void swap(int a, int b) {
+            double distance = distances[a];
+            long position = positions[a];
+            int type = types[a];
+            set(a, distances[b], positions[b], types[b]);
+            set(b, distance, position, type);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int largest = left + 1 < size && distances[left + 1] > distances[left] ? left + 1 : left;
+                if (distances[i] >= distances[largest]) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.MoreOutlines;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.block.Block;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Selected blocks that were seen before but are no longer in the scan volume.
+ *
+ * <p>Entries are kept off-heap in one direct buffer per chunk, 12 bytes each:
+ * the packed position and the raw id of the block's default state. Buffers are
+ * copied on write, so a {@link RememberedBlocks} snapshot handed to the render
+ * thread never changes underneath it, and the snapshot itself is only rebuilt
+ * after something changed.
+ *
+ * <p>When the limit is exceeded, the chunks remembered longest ago are dropped
+ * first. Only touched on the scan worker thread.
+ *
+ * <p>With a {@link BlockIndexFile} attached, every change to a chunk is also
+ * appended to the file, and the chunks it held are adopted without copying.
+ */
+final class RememberedBlockStore {
+    static final int ENTRY_BYTES = 12;
+
+    private final Long2ObjectLinkedOpenHashMap<ByteBuffer> chunks = new Long2ObjectLinkedOpenHashMap<>();
+    private final Object2IntMap<Identifier> defaultStateIds = new Object2IntOpenHashMap<>();
+    private int blockCount;
+    private BlockIndexFile indexFile;
+    // The last snapshot taken, or null once something changed since
+    private RememberedBlocks snapshot = RememberedBlocks.EMPTY;
+
+    RememberedBlockStore() {
+        defaultStateIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * Remembers the matches of a section that is leaving the working set.
+     */
+    void remember(TrackedSection section, int maxBlocks) {
+        if (maxBlocks <= 0 || section.getBlockCount() == 0) {
+            return;
+        }
+
+        // Whatever was remembered of the section before is outdated by the scan result
+        forget(section.getSectionKey());
+
+        long chunkKey = ChunkPos.toLong(
+            ChunkSectionPos.unpackX(section.getSectionKey()), ChunkSectionPos.unpackZ(section.getSectionKey()));
+        ByteBuffer previous = chunks.remove(chunkKey);
+        int previousBytes = previous != null ? previous.limit() : 0;
+
+        ByteBuffer entries = allocate(previousBytes + section.getBlockCount() * ENTRY_BYTES);
+        if (previous != null) {
+            entries.put(previous.duplicate());
+        }
+        for (int paletteIndex = 0; paletteIndex < section.getTypeCount(); paletteIndex++) {
+            int stateId = getDefaultStateId(section.getType(paletteIndex));
+            for (int index = section.nextBlock(paletteIndex, 0); index >= 0; index = section.nextBlock(paletteIndex, index + 1)) {
+                entries.putLong(BlockPos.asLong(section.getBlockX(index), section.getBlockY(index), section.getBlockZ(index)));
+                entries.putInt(stateId);
+            }
+        }
+
+        chunks.put(chunkKey, entries.flip());
+        blockCount += section.getBlockCount();
+        snapshot = null;
+        writeChunk(chunkKey, entries);
+
+        evictOverLimit(maxBlocks);
+    }
+
+    /**
+     * Adopts the selected blocks of the chunks read from an index file, up to the limit.
+     */
+    void load(Long2ObjectMap<ByteBuffer> loadedChunks, BlockStateLookup lookup, int maxBlocks) {
+        for (Long2ObjectMap.Entry<ByteBuffer> entry : loadedChunks.long2ObjectEntrySet()) {
+            ByteBuffer entries = retainSelected(entry.getValue(), lookup);
+            if (entries == null) {
+                continue;
+            }
+            ByteBuffer previous = chunks.put(entry.getLongKey(), entries);
+            if (previous != null) {
+                blockCount -= previous.limit() / ENTRY_BYTES;
+            }
+            blockCount += entries.limit() / ENTRY_BYTES;
+            snapshot = null;
+        }
+        evictOverLimit(maxBlocks);
+    }
+
+    /**
+     * Drops the blocks of types that are no longer selected, keeping the rest.
+     * An attached file is left untouched, so it keeps them until their chunk
+     * is written again.
+     */
+    void retainSelected(BlockStateLookup lookup) {
+        ObjectIterator<Long2ObjectMap.Entry<ByteBuffer>> entries = Long2ObjectMaps.fastIterator(chunks);
+        while (entries.hasNext()) {
+            Long2ObjectMap.Entry<ByteBuffer> entry = entries.next();
+            ByteBuffer kept = retainSelected(entry.getValue(), lookup);
+            if (kept == entry.getValue()) {
+                continue;
+            }
+
+            blockCount -= (entry.getValue().limit() - (kept != null ? kept.limit() : 0)) / ENTRY_BYTES;
+            snapshot = null;
+            if (kept == null) {
+                entries.remove();
+            } else {
+                entry.setValue(kept);
+            }
+        }
+    }
+
+    /**
+     * @return the entries themselves if all are selected, a copy of the
+     *         selected ones, or {@code null} if none is
+     */
+    private static ByteBuffer retainSelected(ByteBuffer entries, BlockStateLookup lookup) {
+        int kept = 0;
+        for (int offset = 0; offset < entries.limit(); offset += ENTRY_BYTES) {
+            if (lookup.getType(entries.getInt(offset + Long.BYTES)) != null) {
+                kept++;
+            }
+        }
+        if (kept == entries.limit() / ENTRY_BYTES) {
+            return entries;
+        }
+        if (kept == 0) {
+            return null;
+        }
+
+        ByteBuffer result = allocate(kept * ENTRY_BYTES);
+        for (int offset = 0; offset < entries.limit(); offset += ENTRY_BYTES) {
+            if (lookup.getType(entries.getInt(offset + Long.BYTES)) != null) {
+                result.put(entries.slice(offset, ENTRY_BYTES));
+            }
+        }
+        return result.flip();
+    }
+
+    private void evictOverLimit(int maxBlocks) {
+        while (blockCount > maxBlocks && !chunks.isEmpty()) {
+            long chunkKey = chunks.firstLongKey();
+            blockCount -= chunks.removeFirst().limit() / ENTRY_BYTES;
+            snapshot = null;
+            writeChunk(chunkKey, null);
+        }
+    }
+
+    /**
+     * Sets the file changes are appended to, or detaches it with {@code null}.
+     */
+    void setIndexFile(BlockIndexFile indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    private void writeChunk(long chunkKey, ByteBuffer entries) {
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            indexFile.write(chunkKey, entries);
+        } catch (IOException e) {
+            // Keep remembering in memory; the file is simply no longer kept up to date
+            MoreOutlines.LOGGER.error("Failed to write block index, disabling it for this session", e);
+            indexFile = null;
+        }
+    }
+
+    /**
+     * Drops the remembered blocks of a section, typically because it is being
+     * observed again.
+     */
+    void forget(long sectionKey) {
+        long chunkKey = ChunkPos.toLong(ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackZ(sectionKey));
+        ByteBuffer previous = chunks.get(chunkKey);
+        if (previous == null) {
+            return;
+        }
+
+        int sectionY = ChunkSectionPos.unpackY(sectionKey);
+        int kept = 0;
+        for (int offset = 0; offset < previous.limit(); offset += ENTRY_BYTES) {
+            if (ChunkSectionPos.getSectionCoord(BlockPos.unpackLongY(previous.getLong(offset))) != sectionY) {
+                kept++;
+            }
+        }
+        int removed = previous.limit() / ENTRY_BYTES - kept;
+        if (removed == 0) {
+            return;
+        }
+
+        blockCount -= removed;
+        snapshot = null;
+        if (kept == 0) {
+            chunks.remove(chunkKey);
+            writeChunk(chunkKey, null);
+            return;
+        }
+
+        ByteBuffer entries = allocate(kept * ENTRY_BYTES);
+        for (int offset = 0; offset < previous.limit(); offset += ENTRY_BYTES) {
+            if (ChunkSectionPos.getSectionCoord(BlockPos.unpackLongY(previous.getLong(offset))) != sectionY) {
+                entries.put(previous.slice(offset, ENTRY_BYTES));
+            }
+        }
+        chunks.put(chunkKey, entries.flip());
+        writeChunk(chunkKey, entries);
+    }
+
+    /**
+     * Forgets everything in memory. An attached file is left untouched.
+     */
+    void clear() {
+        chunks.clear();
+        blockCount = 0;
+        snapshot = RememberedBlocks.EMPTY;
+    }
+
+    RememberedBlocks snapshot() {
+        if (snapshot == null) {
+            snapshot = blockCount == 0 ? RememberedBlocks.EMPTY : new RememberedBlocks(chunks, blockCount);
+        }
+        return snapshot;
+    }
+
+    private int getDefaultStateId(Identifier type) {
+        int stateId = defaultStateIds.getInt(type);
+        if (stateId < 0) {
+            stateId = Block.getRawIdFromState(Registries.BLOCK.get(type).getDefaultState());
+            defaultStateIds.put(type, stateId);
+        }
+        return stateId;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        // Little-endian on every platform, so buffers can be written to and mapped from the index file
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
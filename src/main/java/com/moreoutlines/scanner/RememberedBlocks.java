@@ -0,0 +1,73 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable snapshot of the selected blocks remembered outside the scan volume.
+ *
+ * <p>Entries live off-heap in one direct buffer per chunk, see
+ * {@link RememberedBlockStore}, so even millions of them neither grow the Java
+ * heap nor lengthen GC pauses. The buffers are never written once published.
+ */
+public final class RememberedBlocks {
+    public static final RememberedBlocks EMPTY = new RememberedBlocks(Long2ObjectMaps.emptyMap(), 0);
+
+    /**
+     * Receives remembered blocks without allocating an object per block.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param packedPos  the {@link net.minecraft.util.math.BlockPos#asLong packed} block position
+         * @param rawStateId the raw id of the block state to draw
+         */
+        void visit(long packedPos, int rawStateId);
+    }
+
+    private final Long2ObjectMap<ByteBuffer> chunks;
+    private final int blockCount;
+
+    RememberedBlocks(Long2ObjectMap<ByteBuffer> chunks, int blockCount) {
+        this.chunks = Long2ObjectMaps.unmodifiable(new Long2ObjectOpenHashMap<>(chunks));
+        this.blockCount = blockCount;
+    }
+
+    /** @return the packed positions of the chunks holding remembered blocks */
+    public LongSet getChunks() {
+        return chunks.keySet();
+    }
+
+    /**
+     * Visits the remembered blocks of one chunk.
+     */
+    public void forEachInChunk(long chunkKey, Visitor visitor) {
+        ByteBuffer entries = chunks.get(chunkKey);
+        if (entries == null) {
+            return;
+        }
+        for (int offset = 0; offset < entries.limit(); offset += RememberedBlockStore.ENTRY_BYTES) {
+            visitor.visit(entries.getLong(offset), entries.getInt(offset + 8));
+        }
+    }
+
+    /**
+     * Checks whether a chunk's remembered blocks are unchanged since another
+     * snapshot. Unchanged chunks share their entries between snapshots.
+     */
+    public boolean hasSameChunk(long chunkKey, RememberedBlocks other) {
+        return chunks.get(chunkKey) == other.chunks.get(chunkKey);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public boolean isEmpty() {
+        return blockCount == 0;
+    }
+}
@@ -0,0 +1,57 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.List;
+
+/**
+ * A unit of work for the {@link ScanWorker}, captured on the client thread.
+ *
+ * @param replace          whether the results replace everything tracked so far
+ * @param lookup           the compiled block selection at the time of capture
+ * @param sections         section snapshots to scan
+ * @param removedSections  packed section positions to drop before scanning
+ * @param limits           caps on the published result, as of capture
+ * @param retainedSections when replacing, the sections already applied by
+ *                         earlier batches of the same sweep to keep, or
+ *                         {@code null} to drop everything
+ */
+record ScanBatch(
+    boolean replace,
+    BlockStateLookup lookup,
+    List<SectionSnapshot> sections,
+    LongSet removedSections,
+    TrackingLimits limits,
+    LongSet retainedSections
+) {
+
+    ScanBatch(boolean replace, BlockStateLookup lookup, List<SectionSnapshot> sections, LongSet removedSections,
+            TrackingLimits limits) {
+        this(replace, lookup, sections, removedSections, limits, null);
+    }
+
+    /**
+     * A private copy of one chunk section's block states, or its matches when
+     * they could be resolved without a voxel scan.
+     *
+     * @param sectionKey the packed section position
+     * @param states     the copied states to scan, or {@code null}
+     * @param lookup     the selection the states are scanned for, which may be
+     *                   narrower than the batch's in the outer scan shells
+     * @param matches    the section's matches if already resolved, or {@code null};
+     *                   a snapshot with neither only clears the section
+     */
+    record SectionSnapshot(
+        long sectionKey,
+        PalettedContainer<BlockState> states,
+        BlockStateLookup lookup,
+        TrackedSection matches
+    ) {
+
+        static SectionSnapshot empty(long sectionKey) {
+            return new SectionSnapshot(sectionKey, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.moreoutlines.scanner;
+
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Orders the areas to scan by what the player is about to see: those inside
+ * the camera frustum first, then those in front of the player, then those
+ * behind, each closest first. Visible outlines then converge first when a scan
+ * is spread over several ticks, for example after a teleport or respawn.
+ *
+ * <p>Priorities are non-negative and below 2<sup>42</sup>, leaving room to pack
+ * an index into the low bits of a sort key.
+ */
+final class ScanPriority {
+    private static final long VISIBLE = 0;
+    private static final long AHEAD = 1;
+    private static final long BEHIND = 2;
+    private static final long MAX_DISTANCE = (1L << 40) - 1;
+    // Distance from the center of a column or section to its farthest corner, horizontally for columns
+    private static final double COLUMN_EXTENT = 8 * Math.sqrt(2);
+    private static final double SECTION_EXTENT = 8 * Math.sqrt(3);
+
+    private final Frustum frustum;
+    private final Vec3d eyePos;
+    private final Vec3d look;
+
+    /**
+     * @param frustum the camera frustum of the last frame, or {@code null} if
+     *                none has been rendered yet
+     * @param look    the player's normalized view direction
+     */
+    ScanPriority(Frustum frustum, Vec3d eyePos, Vec3d look) {
+        this.frustum = frustum;
+        this.eyePos = eyePos;
+        this.look = look;
+    }
+
+    Vec3d getEyePos() {
+        return eyePos;
+    }
+
+    /**
+     * Gets the priority of a chunk column between two heights, by horizontal
+     * distance; lower values are scanned first.
+     */
+    long getColumnPriority(int chunkX, int chunkZ, int minY, int maxY) {
+        int minX = ChunkSectionPos.getBlockCoord(chunkX);
+        int minZ = ChunkSectionPos.getBlockCoord(chunkZ);
+        double dx = minX + 8 - eyePos.x;
+        double dz = minZ + 8 - eyePos.z;
+        Box box = new Box(minX, minY, minZ, minX + 16, maxY + 1, minZ + 16);
+        return getPriority(box, COLUMN_EXTENT, dx, 0, dz);
+    }
+
+    /**
+     * Gets the priority of a chunk section; lower values are scanned first.
+     */
+    long getSectionPriority(long sectionKey) {
+        int minX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey));
+        int minY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey));
+        int minZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey));
+        Box box = new Box(minX, minY, minZ, minX + 16, minY + 16, minZ + 16);
+        return getPriority(box, SECTION_EXTENT, minX + 8 - eyePos.x, minY + 8 - eyePos.y, minZ + 8 - eyePos.z);
+    }
+
+    /**
+     * @param extent the distance from the area's center to its farthest point
+     * @param dx     the offset from the eyes to the area's center, likewise dy and dz
+     */
+    private long getPriority(Box box, double extent, double dx, double dy, double dz) {
+        long tier;
+        if (frustum != null && frustum.isVisible(box)) {
+            tier = VISIBLE;
+        } else {
+            // Areas reaching past the player's eyes, like the one they stand in, count as ahead
+            double along = dx * look.x + dy * look.y + dz * look.z;
+            tier = along >= -extent ? AHEAD : BEHIND;
+        }
+        long distance = (long) (dx * dx + dy * dy + dz * dz);
+        return tier << 40 | Math.min(distance, MAX_DISTANCE);
+    }
+}
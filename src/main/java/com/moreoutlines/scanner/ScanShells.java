@@ -0,0 +1,116 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Nested shells of a scan volume, one per distinct scan radius of the selected
+ * types, so types with a small radius are only looked for close to the player.
+ *
+ * <p>Each section is scanned for the types whose radius reaches the innermost
+ * shell it intersects. Sections of outer shells usually hold none of those
+ * types in their palette and are skipped without copying them, so the voxels
+ * read per sweep scale with what each type needs rather than with the largest
+ * radius. Like the volume itself, shells are made of whole sections.
+ */
+final class ScanShells {
+    private final ScanVolume volume;
+    private final int defaultRadius;
+    private final ScanVolume[] shells;
+    private final BlockStateLookup[] lookups;
+
+    private ScanShells(ScanVolume volume, int defaultRadius, ScanVolume[] shells, BlockStateLookup[] lookups) {
+        this.volume = volume;
+        this.defaultRadius = defaultRadius;
+        this.shells = shells;
+        this.lookups = lookups;
+    }
+
+    /**
+     * @param defaultRadius the radius of types without their own
+     */
+    static ScanShells of(ScanVolume volume, BlockStateLookup lookup, int defaultRadius) {
+        IntSortedSet radii = lookup.getRadii(defaultRadius);
+        // Radii beyond the volume (the render distance) all land in its outer shell
+        radii.removeIf(radius -> radius >= volume.radius());
+        if (radii.isEmpty()) {
+            return new ScanShells(volume, defaultRadius, new ScanVolume[] { volume }, new BlockStateLookup[] { lookup });
+        }
+
+        ScanVolume[] shells = new ScanVolume[radii.size() + 1];
+        BlockStateLookup[] lookups = new BlockStateLookup[shells.length];
+        int shell = 0;
+        for (int radius : radii) {
+            shells[shell] = volume.withRadius(radius);
+            lookups[shell] = shell == 0 ? lookup : lookup.withinRadius(radius, defaultRadius);
+            shell++;
+        }
+        shells[shell] = volume;
+        lookups[shell] = lookup.withinRadius(radii.lastInt() + 1, defaultRadius);
+        return new ScanShells(volume, defaultRadius, shells, lookups);
+    }
+
+    /**
+     * Gets the same shells around a moved volume of the same shape, reusing
+     * the derived lookups.
+     */
+    ScanShells moveTo(ScanVolume volume) {
+        ScanVolume[] moved = new ScanVolume[shells.length];
+        for (int shell = 0; shell < shells.length - 1; shell++) {
+            moved[shell] = volume.withRadius(shells[shell].radius());
+        }
+        moved[shells.length - 1] = volume;
+        return new ScanShells(volume, defaultRadius, moved, lookups);
+    }
+
+    ScanVolume getVolume() {
+        return volume;
+    }
+
+    /** @return the radius of types without their own */
+    int getDefaultRadius() {
+        return defaultRadius;
+    }
+
+    /** @return true if the selected types do not all share one radius */
+    boolean isNested() {
+        return shells.length > 1;
+    }
+
+    /**
+     * Gets the innermost shell a section intersects. Sections outside the
+     * volume are counted in the outer shell, as chunk packets index the whole
+     * loaded area with the render distance shape.
+     */
+    int getShell(long sectionKey) {
+        int sectionX = ChunkSectionPos.unpackX(sectionKey);
+        int sectionY = ChunkSectionPos.unpackY(sectionKey);
+        int sectionZ = ChunkSectionPos.unpackZ(sectionKey);
+        for (int shell = 0; shell < shells.length - 1; shell++) {
+            if (shells[shell].intersectsSection(sectionX, sectionY, sectionZ)) {
+                return shell;
+            }
+        }
+        return shells.length - 1;
+    }
+
+    /**
+     * Gets the selection a section is scanned for: the types whose radius
+     * reaches its shell.
+     */
+    BlockStateLookup getLookup(long sectionKey) {
+        return lookups[getShell(sectionKey)];
+    }
+
+    /**
+     * Visits the packed position of every section in the inner shells, that is
+     * every section not scanned for the outer shell's types alone.
+     */
+    void forEachInnerSection(LongConsumer action) {
+        if (isNested()) {
+            shells[shells.length - 2].forEachSection(action);
+        }
+    }
+}
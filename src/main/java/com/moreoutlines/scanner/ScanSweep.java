@@ -0,0 +1,199 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A full pass over the scan volume that can be spread across several ticks.
+ *
+ * <p>The sweep remembers which section it visits next, so each tick can spend a
+ * bounded amount of time on it and resume where the previous tick stopped.
+ * Sections are visited column by column so each chunk is resolved once per
+ * column, columns whose chunk is not loaded are skipped whole, and sections
+ * entirely outside the volume's shape are skipped without a visit. Each
+ * section is snapshotted for the selection of its {@link ScanShells shell}.
+ *
+ * <p>Columns are visited in {@link ScanPriority} order, those in view and
+ * closest first, and each column outwards from the player's eye height, so an
+ * amortized sweep produces the visible outlines before the rest.
+ *
+ * <p>A streaming sweep hands its snapshots over as it goes, for warming up a
+ * world where the previous results are of no use, so the visible outlines show
+ * up within a tick or two instead of once the whole volume is covered. Other
+ * sweeps hand them over in larger parts, so they never hold a copy of every
+ * matching section in the volume.
+ */
+final class ScanSweep {
+    /**
+     * Produces the snapshot for one section of the sweep.
+     */
+    @FunctionalInterface
+    interface SectionSnapshotter {
+        ScanBatch.SectionSnapshot snapshot(WorldChunk chunk, int sectionY, BlockStateLookup lookup);
+    }
+
+    private final ClientWorld world;
+    private final ScanShells shells;
+    private final ScanVolume volume;
+    private final boolean streaming;
+    private final LongSet streamedSections = new LongOpenHashSet();
+    private List<ScanBatch.SectionSnapshot> snapshots = new ArrayList<>();
+    private int copyCount;
+
+    private final int minSectionX;
+    private final int minSectionY;
+    private final int minSectionZ;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int sectionCount;
+    // Column indexes and section heights in visiting order
+    private final int[] columnOrder;
+    private final int[] heightOrder;
+    private int nextSection = 0;
+    private int currentColumn = -1;
+    private WorldChunk currentChunk;
+
+    ScanSweep(ClientWorld world, ScanShells shells, ScanPriority priority, boolean streaming) {
+        this.world = world;
+        this.streaming = streaming;
+        this.shells = shells;
+        this.volume = shells.getVolume();
+
+        this.minSectionX = ChunkSectionPos.getSectionCoord(volume.minX());
+        this.minSectionY = ChunkSectionPos.getSectionCoord(volume.minY());
+        this.minSectionZ = ChunkSectionPos.getSectionCoord(volume.minZ());
+        int sizeX = ChunkSectionPos.getSectionCoord(volume.maxX()) - minSectionX + 1;
+        this.sizeY = ChunkSectionPos.getSectionCoord(volume.maxY()) - minSectionY + 1;
+        this.sizeZ = ChunkSectionPos.getSectionCoord(volume.maxZ()) - minSectionZ + 1;
+        this.sectionCount = sizeX * sizeY * sizeZ;
+
+        // Sort by priority, with the column index in the low bits
+        long[] columns = new long[sizeX * sizeZ];
+        for (int column = 0; column < columns.length; column++) {
+            long columnPriority = priority.getColumnPriority(
+                minSectionX + column / sizeZ, minSectionZ + column % sizeZ, volume.minY(), volume.maxY());
+            columns[column] = columnPriority << 16 | column;
+        }
+        Arrays.sort(columns);
+        this.columnOrder = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnOrder[i] = (int) (columns[i] & 0xFFFF);
+        }
+
+        long[] heights = new long[sizeY];
+        int eyeSectionY = ChunkSectionPos.getSectionCoord(priority.getEyePos().y);
+        for (int height = 0; height < sizeY; height++) {
+            heights[height] = (long) Math.abs(minSectionY + height - eyeSectionY) << 16 | height;
+        }
+        Arrays.sort(heights);
+        this.heightOrder = new int[sizeY];
+        for (int i = 0; i < sizeY; i++) {
+            heightOrder[i] = (int) (heights[i] & 0xFFFF);
+        }
+    }
+
+    /**
+     * Visits sections until the sweep is complete or the deadline has passed.
+     * At least one section is visited per call so a sweep always makes progress.
+     *
+     * @return true once every section has been visited
+     */
+    boolean advance(long deadlineNanos, SectionSnapshotter snapshotter) {
+        // The chunk may have been unloaded or replaced since the previous tick
+        currentColumn = -1;
+        currentChunk = null;
+
+        while (nextSection < sectionCount) {
+            int step = nextSection / sizeY;
+            int sectionY = minSectionY + heightOrder[nextSection % sizeY];
+            int column = columnOrder[step];
+            int sectionZ = minSectionZ + column % sizeZ;
+            int sectionX = minSectionX + column / sizeZ;
+
+            if (column != currentColumn) {
+                currentColumn = column;
+                currentChunk = world.getChunkManager().getWorldChunk(sectionX, sectionZ);
+                if (currentChunk == null) {
+                    // Nothing to scan in an unloaded chunk; its load event queues it later
+                    nextSection = (step + 1) * sizeY;
+                    continue;
+                }
+            }
+            nextSection++;
+
+            if (!volume.intersectsSection(sectionX, sectionY, sectionZ)) {
+                continue;
+            }
+
+            BlockStateLookup lookup = shells.getLookup(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+            // Empty snapshots are kept too, so the worker forgets whatever was
+            // remembered of a section that no longer holds anything selected
+            ScanBatch.SectionSnapshot snapshot = snapshotter.snapshot(currentChunk, sectionY, lookup);
+            snapshots.add(snapshot);
+            if (snapshot.states() != null) {
+                copyCount++;
+            }
+
+            if (System.nanoTime() >= deadlineNanos) {
+                break;
+            }
+        }
+        currentChunk = null;
+        return isComplete();
+    }
+
+    boolean isComplete() {
+        return nextSection >= sectionCount;
+    }
+
+    ClientWorld getWorld() {
+        return world;
+    }
+
+    ScanVolume getVolume() {
+        return volume;
+    }
+
+    ScanShells getShells() {
+        return shells;
+    }
+
+    /** @return the snapshots not taken yet */
+    List<ScanBatch.SectionSnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    /** @return how many of the snapshots not taken yet hold a copy of their section */
+    int getCopyCount() {
+        return copyCount;
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Takes the snapshots made so far, for handing them over before the sweep completes.
+     */
+    List<ScanBatch.SectionSnapshot> takeSnapshots() {
+        List<ScanBatch.SectionSnapshot> taken = snapshots;
+        snapshots = new ArrayList<>();
+        copyCount = 0;
+        for (ScanBatch.SectionSnapshot snapshot : taken) {
+            streamedSections.add(snapshot.sectionKey());
+        }
+        return taken;
+    }
+
+    /** @return the sections of the snapshots taken so far */
+    LongSet getStreamedSections() {
+        return streamedSections;
+    }
+}
@@ -0,0 +1,133 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.config.ScanShape;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.function.LongConsumer;
+
+/**
+ * The volume covered by a scan: a shape of a given radius around a center,
+ * clamped to the world's height.
+ *
+ * <p>The volume is made of whole chunk sections. It is anchored on the center
+ * of the player's section, so it only moves when the player crosses a section
+ * boundary, and a section belongs to it when any of its blocks lies within the
+ * shape.
+ */
+record ScanVolume(BlockPos center, int radius, ScanShape shape, int minY, int maxY) {
+
+    static ScanVolume around(ClientWorld world, BlockPos playerPos, int radius, ScanShape shape) {
+        BlockPos center = new BlockPos(
+            sectionCenter(playerPos.getX()), sectionCenter(playerPos.getY()), sectionCenter(playerPos.getZ()));
+        int worldMinY = world.getBottomY();
+        int worldMaxY = world.getHeight() + world.getBottomY() - 1;
+
+        // Only the render distance column spans the full world height
+        if (shape == ScanShape.RENDER_DISTANCE) {
+            return new ScanVolume(center, radius, shape, worldMinY, worldMaxY);
+        }
+        return new ScanVolume(center, radius, shape,
+            Math.max(center.getY() - radius, worldMinY),
+            Math.min(center.getY() + radius, worldMaxY));
+    }
+
+    /**
+     * Gets a volume of the same shape and center with a smaller radius.
+     */
+    ScanVolume withRadius(int radius) {
+        if (shape == ScanShape.RENDER_DISTANCE) {
+            return new ScanVolume(center, radius, shape, minY, maxY);
+        }
+        // The bounds of this volume already include the world's height limits
+        return new ScanVolume(center, radius, shape,
+            Math.max(center.getY() - radius, minY),
+            Math.min(center.getY() + radius, maxY));
+    }
+
+    private static int sectionCenter(int coord) {
+        return ChunkSectionPos.getBlockCoord(ChunkSectionPos.getSectionCoord(coord)) + 8;
+    }
+
+    int minX() {
+        return center.getX() - radius;
+    }
+
+    int maxX() {
+        return center.getX() + radius;
+    }
+
+    int minZ() {
+        return center.getZ() - radius;
+    }
+
+    int maxZ() {
+        return center.getZ() + radius;
+    }
+
+    /**
+     * Checks whether another volume has the same shape and radius, so results can
+     * be carried over by shifting sections rather than rescanning everything.
+     */
+    boolean hasSameShape(ScanVolume other) {
+        return other != null && radius == other.radius && shape == other.shape;
+    }
+
+    private boolean contains(int x, int y, int z) {
+        return x >= minX() && x <= maxX() && y >= minY && y <= maxY && z >= minZ() && z <= maxZ()
+            && shape.contains(x - center.getX(), y - center.getY(), z - center.getZ(), radius);
+    }
+
+    boolean intersectsSection(long sectionKey) {
+        return intersectsSection(
+            ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackY(sectionKey), ChunkSectionPos.unpackZ(sectionKey));
+    }
+
+    /**
+     * Checks whether any block of the given chunk section lies inside the volume,
+     * by testing the block of the section closest to the center.
+     */
+    boolean intersectsSection(int sectionX, int sectionY, int sectionZ) {
+        int startX = ChunkSectionPos.getBlockCoord(sectionX);
+        int startY = ChunkSectionPos.getBlockCoord(sectionY);
+        int startZ = ChunkSectionPos.getBlockCoord(sectionZ);
+
+        int fromX = Math.max(startX, minX());
+        int toX = Math.min(startX + 15, maxX());
+        int fromY = Math.max(startY, minY);
+        int toY = Math.min(startY + 15, maxY);
+        int fromZ = Math.max(startZ, minZ());
+        int toZ = Math.min(startZ + 15, maxZ());
+        if (fromX > toX || fromY > toY || fromZ > toZ) {
+            return false;
+        }
+
+        return contains(
+            Math.clamp(center.getX(), fromX, toX),
+            Math.clamp(center.getY(), fromY, toY),
+            Math.clamp(center.getZ(), fromZ, toZ));
+    }
+
+    /**
+     * Visits the packed position of every section in the volume.
+     */
+    void forEachSection(LongConsumer action) {
+        for (int sectionX = ChunkSectionPos.getSectionCoord(minX()); sectionX <= ChunkSectionPos.getSectionCoord(maxX()); sectionX++) {
+            for (int sectionZ = ChunkSectionPos.getSectionCoord(minZ()); sectionZ <= ChunkSectionPos.getSectionCoord(maxZ()); sectionZ++) {
+                forEachSectionInChunk(sectionX, sectionZ, action);
+            }
+        }
+    }
+
+    /**
+     * Visits the packed position of every section of a chunk column in the volume.
+     */
+    void forEachSectionInChunk(int chunkX, int chunkZ, LongConsumer action) {
+        for (int sectionY = ChunkSectionPos.getSectionCoord(minY); sectionY <= ChunkSectionPos.getSectionCoord(maxY); sectionY++) {
+            if (intersectsSection(chunkX, sectionY, chunkZ)) {
+                action.accept(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ));
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.MoreOutlines;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.collection.PaletteStorage;
+import net.minecraft.world.chunk.IdListPalette;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background thread that scans section snapshots and publishes the results.
+ *
+ * <p>The worker owns the working set of tracked sections, and the results kept
+ * for other dimensions and for sections out of range. Each batch is applied in
+ * submission order and followed by publishing a fresh immutable
+ * {@link TrackedBlocks}, which readers pick up through a volatile field.
+ */
+final class ScanWorker {
+    // Leave a core each for the client/render thread and the integrated server
+    private static final int SCAN_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+    private static final int SECTIONS_PER_TASK = 4;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "More Outlines Block Scanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ForkJoinPool scanPool = new ForkJoinPool(SCAN_PARALLELISM, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("More Outlines Section Scanner " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    // Only touched on the worker thread
+    private Long2ObjectMap<TrackedSection> workingSections = new Long2ObjectOpenHashMap<>();
+    private DimensionKey workingDimension;
+    private int workingSelectionRevision;
+    private final DimensionResultCache dimensionCache = new DimensionResultCache();
+    private final RememberedBlockStore rememberedBlocks = new RememberedBlockStore();
+    private BlockIndexFile indexFile;
+
+    // Bumped on clear so batches captured before it are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final AtomicInteger queuedBatches = new AtomicInteger();
+
+    private volatile TrackedBlocks published = TrackedBlocks.EMPTY;
+
+    /**
+     * Changes queued for delivery, to a single new listener or to all of them.
+     *
+     * @param listener the listener to deliver to, or {@code null} for all
+     */
+    record ChangeEvent(TrackedBlockListener listener, TrackedBlockChanges changes) {}
+
+    private final Queue<ChangeEvent> changeEvents = new ConcurrentLinkedQueue<>();
+    // Only touched on the worker thread
+    private TrackedBlocks lastPublished = TrackedBlocks.EMPTY;
+    private int listenerCount;
+
+    TrackedBlocks getPublished() {
+        return published;
+    }
+
+    /**
+     * Starts diffing published snapshots for a listener. It is first sent the
+     * latest snapshot as a diff from nothing, so it misses no later change.
+     */
+    void addListener(TrackedBlockListener listener) {
+        executor.execute(() -> {
+            listenerCount++;
+            changeEvents.add(new ChangeEvent(listener,
+                TrackedBlockChanges.between(TrackedBlocks.EMPTY, lastPublished)));
+        });
+    }
+
+    void removeListener() {
+        executor.execute(() -> listenerCount--);
+    }
+
+    /** @return the next queued changes, or {@code null} if there are none */
+    ChangeEvent pollChanges() {
+        return changeEvents.poll();
+    }
+
+    void submit(ScanBatch batch) {
+        int batchGeneration = generation.get();
+        queuedBatches.incrementAndGet();
+        executor.execute(() -> {
+            // Bursts of chunk packets queue many small batches; only publish once
+            // the queue has drained instead of copying the results for each one
+            boolean last = queuedBatches.decrementAndGet() == 0;
+            if (batchGeneration != generation.get()) {
+                return;
+            }
+            try {
+                apply(batch);
+            } catch (RuntimeException e) {
+                MoreOutlines.LOGGER.error("Failed to apply block scan batch", e);
+                return;
+            }
+            if (last && batchGeneration == generation.get()) {
+                publish(batch.limits());
+            }
+        });
+    }
+
+    /**
+     * Switches the working set to another dimension. The current results are
+     * cached for when the player returns, and the target dimension's cached
+     * results, if any, are published right away until a scan reconciles them.
+     *
+     * <p>With an index file, the results are also remembered into it before
+     * leaving, and the target dimension's file is loaded as remembered blocks.
+     *
+     * @param dimension the dimension to switch to, or {@code null} when leaving the world
+     * @param indexPath the target dimension's index file, or {@code null} if it is not persisted
+     */
+    void switchDimension(DimensionKey dimension, BlockStateLookup lookup, long maxCacheBytes, Path indexPath,
+            TrackingLimits limits) {
+        int batchGeneration = generation.get();
+        queuedBatches.incrementAndGet();
+        executor.execute(() -> {
+            boolean last = queuedBatches.decrementAndGet() == 0;
+            if (batchGeneration != generation.get()) {
+                return;
+            }
+
+            if (indexFile != null) {
+                // Everything known about the dimension goes to disk before leaving it
+                for (TrackedSection section : workingSections.values()) {
+                    rememberedBlocks.remember(section, limits.maxRememberedBlocks());
+                }
+                closeIndexFile();
+            }
+            rememberedBlocks.clear();
+
+            if (workingDimension != null && maxCacheBytes > 0) {
+                dimensionCache.put(workingDimension, workingSections, workingSelectionRevision, maxCacheBytes);
+            }
+            Long2ObjectMap<TrackedSection> cached = dimension != null
+                ? dimensionCache.take(dimension, lookup.getRevision())
+                : null;
+            workingSections = cached != null ? cached : new Long2ObjectOpenHashMap<>();
+            workingDimension = dimension;
+            workingSelectionRevision = lookup.getRevision();
+
+            if (indexPath != null && limits.maxRememberedBlocks() > 0) {
+                openIndexFile(indexPath, lookup, limits.maxRememberedBlocks());
+            }
+
+            if (last) {
+                publish(limits);
+            }
+        });
+    }
+
+    private void openIndexFile(Path path, BlockStateLookup lookup, int maxRememberedBlocks) {
+        try {
+            indexFile = BlockIndexFile.open(path);
+        } catch (IOException e) {
+            MoreOutlines.LOGGER.error("Failed to open block index {}", path, e);
+            return;
+        }
+
+        rememberedBlocks.load(indexFile.takeLoadedChunks(), lookup, maxRememberedBlocks);
+        rememberedBlocks.setIndexFile(indexFile);
+        // Sections restored from the cache are known better than from the file
+        LongIterator sectionKeys = workingSections.keySet().iterator();
+        while (sectionKeys.hasNext()) {
+            rememberedBlocks.forget(sectionKeys.nextLong());
+        }
+    }
+
+    private void closeIndexFile() {
+        rememberedBlocks.setIndexFile(null);
+        try {
+            indexFile.close();
+        } catch (IOException e) {
+            MoreOutlines.LOGGER.error("Failed to close block index", e);
+        }
+        indexFile = null;
+    }
+
+    /**
+     * Drops all results, including cached ones. The empty snapshot is visible immediately.
+     */
+    void clear() {
+        generation.incrementAndGet();
+        published = TrackedBlocks.EMPTY;
+        executor.execute(() -> {
+            if (indexFile != null) {
+                closeIndexFile();
+            }
+            workingSections.clear();
+            workingDimension = null;
+            dimensionCache.clear();
+            rememberedBlocks.clear();
+            setPublished(TrackedBlocks.EMPTY);
+        });
+    }
+
+    private void publish(TrackingLimits limits) {
+        Long2ObjectMap<TrackedSection> sections = limits.isUnlimited()
+            ? workingSections
+            : NearestBlockSelector.select(workingSections, limits);
+        setPublished(new TrackedBlocks(sections, rememberedBlocks.snapshot()));
+    }
+
+    private void setPublished(TrackedBlocks next) {
+        if (listenerCount > 0) {
+            TrackedBlockChanges changes = TrackedBlockChanges.between(lastPublished, next);
+            if (!changes.isEmpty()) {
+                changeEvents.add(new ChangeEvent(null, changes));
+            }
+        }
+        lastPublished = next;
+        published = next;
+    }
+
+    private void apply(ScanBatch batch) {
+        int maxRememberedBlocks = batch.limits().maxRememberedBlocks();
+        if (maxRememberedBlocks == 0) {
+            rememberedBlocks.clear();
+        }
+
+        List<ScanBatch.SectionSnapshot> snapshots = batch.sections();
+        if (batch.replace()) {
+            dropUnretainedSections(snapshots, batch.retainedSections(), maxRememberedBlocks);
+            if (batch.lookup().getRevision() != workingSelectionRevision) {
+                // What is remembered of types still selected stays valid across selection changes
+                rememberedBlocks.retainSelected(batch.lookup());
+                workingSelectionRevision = batch.lookup().getRevision();
+            }
+        }
+
+        // Sections leaving the volume or unloading are remembered if enabled
+        LongIterator removedSections = batch.removedSections().iterator();
+        while (removedSections.hasNext()) {
+            TrackedSection removed = workingSections.remove(removedSections.nextLong());
+            if (removed != null) {
+                rememberedBlocks.remember(removed, maxRememberedBlocks);
+            }
+        }
+
+        TrackedSection[] results = new TrackedSection[snapshots.size()];
+        scanPool.invoke(new ScanTask(snapshots, results, 0, snapshots.size()));
+
+        // Merge in submission order on the worker thread
+        for (int i = 0; i < results.length; i++) {
+            long sectionKey = snapshots.get(i).sectionKey();
+            // An observed section is known again, so anything remembered of it is outdated
+            rememberedBlocks.forget(sectionKey);
+            if (results[i] == null) {
+                workingSections.remove(sectionKey);
+            } else {
+                // Keep the previous instance of an unchanged section, so consumers can skip it by identity
+                TrackedSection previous = workingSections.get(sectionKey);
+                if (previous == null || !previous.hasSameBlocks(results[i])) {
+                    workingSections.put(sectionKey, results[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the working sections a replace batch neither retains nor observes
+     * again, remembering them like sections leaving the volume.
+     */
+    private void dropUnretainedSections(List<ScanBatch.SectionSnapshot> snapshots, LongSet retained,
+            int maxRememberedBlocks) {
+        LongSet observed = new LongOpenHashSet(snapshots.size());
+        for (ScanBatch.SectionSnapshot snapshot : snapshots) {
+            observed.add(snapshot.sectionKey());
+        }
+
+        ObjectIterator<Long2ObjectMap.Entry<TrackedSection>> sections = Long2ObjectMaps.fastIterator(workingSections);
+        while (sections.hasNext()) {
+            Long2ObjectMap.Entry<TrackedSection> entry = sections.next();
+            long sectionKey = entry.getLongKey();
+            if (retained != null && retained.contains(sectionKey)) {
+                continue;
+            }
+            sections.remove();
+            if (!observed.contains(sectionKey)) {
+                rememberedBlocks.remember(entry.getValue(), maxRememberedBlocks);
+            }
+        }
+    }
+
+    /**
+     * Fork/join task scanning a range of section snapshots into a shared result array.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private final List<ScanBatch.SectionSnapshot> snapshots;
+        private final TrackedSection[] results;
+        private final int from;
+        private final int to;
+
+        ScanTask(List<ScanBatch.SectionSnapshot> snapshots, TrackedSection[] results, int from, int to) {
+            this.snapshots = snapshots;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SECTIONS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    ScanBatch.SectionSnapshot snapshot = snapshots.get(i);
+                    results[i] = snapshot.states() != null
+                        ? scanSection(snapshot.sectionKey(), snapshot.states(), snapshot.lookup())
+                        : snapshot.matches();
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                new ScanTask(snapshots, results, from, middle),
+                new ScanTask(snapshots, results, middle, to));
+        }
+    }
+
+    /**
+     * Scans one section snapshot into per-type bitsets. The palette entries are
+     * resolved to types once, so each voxel only costs reading its palette index.
+     *
+     * @return the section's matches, or {@code null} if there are none
+     */
+    private static TrackedSection scanSection(long sectionKey, PalettedContainer<BlockState> states,
+            BlockStateLookup lookup) {
+        Palette<BlockState> palette = states.data.palette();
+        PaletteStorage storage = states.data.storage();
+        TrackedSection.Builder builder = new TrackedSection.Builder(sectionKey);
+
+        // The global palette stores raw state ids, which the lookup is indexed by already
+        if (palette instanceof IdListPalette) {
+            for (int index = 0; index < TrackedSection.BLOCKS_PER_SECTION; index++) {
+                Identifier type = lookup.getType(storage.get(index));
+                if (type != null) {
+                    builder.add(index, type);
+                }
+            }
+            return builder.build();
+        }
+
+        Identifier[] paletteTypes = new Identifier[palette.getSize()];
+        boolean anySelected = false;
+        for (int paletteIndex = 0; paletteIndex < paletteTypes.length; paletteIndex++) {
+            paletteTypes[paletteIndex] = lookup.getType(Block.getRawIdFromState(palette.get(paletteIndex)));
+            anySelected |= paletteTypes[paletteIndex] != null;
+        }
+        if (!anySelected) {
+            return null;
+        }
+
+        // Storage indices are ordered like local indices, y then z then x
+        for (int index = 0; index < TrackedSection.BLOCKS_PER_SECTION; index++) {
+            // Air and unselected states map to null
+            Identifier type = paletteTypes[storage.get(index)];
+            if (type != null) {
+                builder.add(index, type);
+            }
+        }
+        return builder.build();
+    }
+}
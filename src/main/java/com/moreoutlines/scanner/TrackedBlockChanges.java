@@ -0,0 +1,115 @@
+package com.moreoutlines.scanner;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The blocks added and removed, per type, from one published
+ * {@link TrackedBlocks} snapshot to the next.
+ *
+ * <p>Sections are compared a bitset word at a time, and sections shared by both
+ * snapshots are skipped entirely, so a small update yields a small diff at a
+ * small cost. Remembered blocks are not part of the diff.
+ */
+public final class TrackedBlockChanges {
+    private final TrackedBlocks trackedBlocks;
+    private final Map<Identifier, LongList> added;
+    private final Map<Identifier, LongList> removed;
+
+    private TrackedBlockChanges(TrackedBlocks trackedBlocks, Map<Identifier, LongList> added,
+            Map<Identifier, LongList> removed) {
+        this.trackedBlocks = trackedBlocks;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * Computes the changes from one snapshot to another.
+     */
+    static TrackedBlockChanges between(TrackedBlocks before, TrackedBlocks after) {
+        Map<Identifier, LongList> added = new HashMap<>();
+        Map<Identifier, LongList> removed = new HashMap<>();
+
+        for (TrackedSection section : after.getSections()) {
+            TrackedSection previous = before.getSection(section.getSectionKey());
+            if (previous != section) {
+                diffSection(previous, section, added);
+                diffSection(section, previous, removed);
+            }
+        }
+        for (TrackedSection section : before.getSections()) {
+            if (after.getSection(section.getSectionKey()) == null) {
+                diffSection(null, section, removed);
+            }
+        }
+        return new TrackedBlockChanges(after, added, removed);
+    }
+
+    /**
+     * Collects the blocks of {@code to} missing from {@code from}, per type.
+     *
+     * @param from the section to compare against, or {@code null} if it has no blocks
+     */
+    private static void diffSection(TrackedSection from, TrackedSection to, Map<Identifier, LongList> result) {
+        if (to == null) {
+            return;
+        }
+
+        for (int paletteIndex = 0; paletteIndex < to.getTypeCount(); paletteIndex++) {
+            Identifier type = to.getType(paletteIndex);
+            int fromIndex = from != null ? from.getPaletteIndex(type) : -1;
+
+            LongList positions = null;
+            for (int word = 0; word < TrackedSection.WORDS_PER_SECTION; word++) {
+                long bits = to.getTypeWord(paletteIndex, word);
+                if (fromIndex >= 0) {
+                    bits &= ~from.getTypeWord(fromIndex, word);
+                }
+                while (bits != 0) {
+                    int index = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (positions == null) {
+                        positions = result.computeIfAbsent(type, k -> new LongArrayList());
+                    }
+                    positions.add(BlockPos.asLong(to.getBlockX(index), to.getBlockY(index), to.getBlockZ(index)));
+                }
+            }
+        }
+    }
+
+    /** @return the snapshot these changes lead to */
+    public TrackedBlocks getTrackedBlocks() {
+        return trackedBlocks;
+    }
+
+    /** @return the types with any block added or removed */
+    public Set<Identifier> getTypes() {
+        Set<Identifier> types = new HashSet<>(added.keySet());
+        types.addAll(removed.keySet());
+        return types;
+    }
+
+    /** @return the {@link BlockPos#asLong packed} positions of added blocks of a type */
+    public LongList getAdded(Identifier type) {
+        LongList positions = added.get(type);
+        return positions != null ? LongLists.unmodifiable(positions) : LongLists.emptyList();
+    }
+
+    /** @return the {@link BlockPos#asLong packed} positions of removed blocks of a type */
+    public LongList getRemoved(Identifier type) {
+        LongList positions = removed.get(type);
+        return positions != null ? LongLists.unmodifiable(positions) : LongLists.emptyList();
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+}
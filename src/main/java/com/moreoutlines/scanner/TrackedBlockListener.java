@@ -0,0 +1,16 @@
+package com.moreoutlines.scanner;
+
+/**
+ * Receives the changes between consecutive {@link TrackedBlocks} snapshots, so
+ * consumers can update incrementally instead of rebuilding from the full set.
+ *
+ * <p>Listeners are called on the client thread, in publication order. A newly
+ * registered listener first receives every block of the latest snapshot as
+ * added, then the changes from there on.
+ *
+ * @see BlockSelectionScanner#addListener(TrackedBlockListener)
+ */
+@FunctionalInterface
+public interface TrackedBlockListener {
+    void onTrackedBlocksChanged(TrackedBlockChanges changes);
+}
@@ -0,0 +1,129 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.util.RenderUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable snapshot of every tracked block, keyed by chunk section.
+ *
+ * <p>The scan worker publishes a new snapshot once a batch is fully applied, so
+ * readers on the render thread always see a complete, consistent result and
+ * never wait on a scan in progress.
+ *
+ * <p>Sections are also grouped into a coarse grid of cells, so frustum queries
+ * only test the sections of cells that are partly in view.
+ */
+public final class TrackedBlocks {
+    public static final TrackedBlocks EMPTY = new TrackedBlocks(Long2ObjectMaps.emptyMap(), RememberedBlocks.EMPTY);
+
+    // Frustum culling groups sections into cells of 4x4x4 sections
+    private static final int CELL_SHIFT = 2;
+    private static final int CELL_BLOCKS = 16 << CELL_SHIFT;
+
+    private final Long2ObjectMap<TrackedSection> sections;
+    private final RememberedBlocks remembered;
+    private final int blockCount;
+    // Built on the first frustum query; racing readers at worst build it twice
+    private volatile Long2ObjectMap<List<TrackedSection>> sectionsByCell;
+
+    TrackedBlocks(Long2ObjectMap<TrackedSection> sections, RememberedBlocks remembered) {
+        this.sections = Long2ObjectMaps.unmodifiable(new Long2ObjectOpenHashMap<>(sections));
+        this.remembered = remembered;
+
+        int count = 0;
+        for (TrackedSection section : this.sections.values()) {
+            count += section.getBlockCount();
+        }
+        this.blockCount = count;
+    }
+
+    public Collection<TrackedSection> getSections() {
+        return sections.values();
+    }
+
+    public TrackedSection getSection(long sectionKey) {
+        return sections.get(sectionKey);
+    }
+
+    /** @return true if the block at the position is tracked */
+    public boolean contains(BlockPos pos) {
+        TrackedSection section = sections.get(ChunkSectionPos.toLong(pos));
+        return section != null && section.contains(pos);
+    }
+
+    /** @return blocks seen before that are no longer in the scan volume */
+    public RememberedBlocks getRemembered() {
+        return remembered;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty() && remembered.isEmpty();
+    }
+
+    /**
+     * Visits the tracked sections that are at least partly inside a frustum.
+     * Sections are culled by cell first, so the sections of cells outside the
+     * frustum are never tested, and those of cells inside it are not tested
+     * one by one.
+     */
+    public void forEachSectionInFrustum(Frustum frustum, Consumer<TrackedSection> consumer) {
+        for (Long2ObjectMap.Entry<List<TrackedSection>> cell : Long2ObjectMaps.fastIterable(getCells())) {
+            long cellKey = cell.getLongKey();
+            int minX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(cellKey) << CELL_SHIFT);
+            int minY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(cellKey) << CELL_SHIFT);
+            int minZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(cellKey) << CELL_SHIFT);
+            Box box = new Box(minX, minY, minZ, minX + CELL_BLOCKS, minY + CELL_BLOCKS, minZ + CELL_BLOCKS);
+            if (!frustum.isVisible(box)) {
+                continue;
+            }
+
+            boolean inside = RenderUtil.isInside(frustum, box);
+            for (TrackedSection section : cell.getValue()) {
+                if (inside || frustum.isVisible(getSectionBox(section.getSectionKey()))) {
+                    consumer.accept(section);
+                }
+            }
+        }
+    }
+
+    private Long2ObjectMap<List<TrackedSection>> getCells() {
+        Long2ObjectMap<List<TrackedSection>> cells = sectionsByCell;
+        if (cells != null) {
+            return cells;
+        }
+
+        cells = new Long2ObjectOpenHashMap<>();
+        for (TrackedSection section : sections.values()) {
+            long sectionKey = section.getSectionKey();
+            long cellKey = ChunkSectionPos.asLong(
+                ChunkSectionPos.unpackX(sectionKey) >> CELL_SHIFT,
+                ChunkSectionPos.unpackY(sectionKey) >> CELL_SHIFT,
+                ChunkSectionPos.unpackZ(sectionKey) >> CELL_SHIFT);
+            cells.computeIfAbsent(cellKey, k -> new ArrayList<>()).add(section);
+        }
+        sectionsByCell = cells;
+        return cells;
+    }
+
+    private static Box getSectionBox(long sectionKey) {
+        int minX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey));
+        int minY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey));
+        int minZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey));
+        return new Box(minX, minY, minZ, minX + 16, minY + 16, minZ + 16);
+    }
+}
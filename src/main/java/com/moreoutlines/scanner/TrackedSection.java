@@ -0,0 +1,247 @@
+package com.moreoutlines.scanner;
+
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.Arrays;
+
+/**
+ * Immutable scan result for a single chunk section: which of its 4096 blocks
+ * match, and which selected block type each match is.
+ *
+ * <p>Matches are stored as a 4096-bit occupancy bitset (64 longs, 512 bytes)
+ * indexed like the section's block-state container, {@code (y << 8) | (z << 4) | x}.
+ * The block types found in the section form a small palette; sections with a
+ * single type reuse the occupancy bitset for it, while mixed sections keep one
+ * more bitset per type. Outline colors are not part of the result, they are
+ * looked up from the current {@link BlockStateLookup} when drawn.
+ */
+public final class TrackedSection {
+    public static final int BLOCKS_PER_SECTION = 4096;
+    static final int WORDS_PER_SECTION = BLOCKS_PER_SECTION / Long.SIZE;
+
+    private final long sectionKey;
+    private final long[] occupancy;
+    private final Identifier[] types;
+    private final long[][] typeBits;
+    private final int blockCount;
+
+    /**
+     * @param types    the palette of block types present in the section
+     * @param typeBits one 64-word bitset of matching blocks per palette entry;
+     *                 the arrays are taken over, not copied
+     */
+    TrackedSection(long sectionKey, Identifier[] types, long[][] typeBits) {
+        this.sectionKey = sectionKey;
+        this.types = types;
+        this.typeBits = typeBits;
+
+        if (typeBits.length == 1) {
+            this.occupancy = typeBits[0];
+        } else {
+            this.occupancy = new long[WORDS_PER_SECTION];
+            for (long[] bits : typeBits) {
+                for (int word = 0; word < WORDS_PER_SECTION; word++) {
+                    this.occupancy[word] |= bits[word];
+                }
+            }
+        }
+
+        int count = 0;
+        for (long word : occupancy) {
+            count += Long.bitCount(word);
+        }
+        this.blockCount = count;
+    }
+
+    /**
+     * Gets the index of a block within its section's bitsets.
+     */
+    public static int getLocalIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /** @return the packed {@link ChunkSectionPos} of this section */
+    public long getSectionKey() {
+        return sectionKey;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /** @return true if the block at the local index matches any selected type */
+    public boolean contains(int localIndex) {
+        return (occupancy[localIndex >>> 6] & 1L << localIndex) != 0;
+    }
+
+    public boolean contains(BlockPos pos) {
+        return ChunkSectionPos.toLong(pos) == sectionKey
+            && contains(getLocalIndex(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    /** @return the number of block types in this section's palette */
+    public int getTypeCount() {
+        return types.length;
+    }
+
+    public Identifier getType(int paletteIndex) {
+        return types[paletteIndex];
+    }
+
+    /** @return the palette entry of a block type, or -1 if the section holds none of it */
+    public int getPaletteIndex(Identifier type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the next block of a palette entry, in the manner of
+     * {@link java.util.BitSet#nextSetBit}, so callers can iterate without
+     * allocating.
+     *
+     * @return the local index of the next block at or after {@code fromIndex},
+     *         or -1 if there is none
+     */
+    public int nextBlock(int paletteIndex, int fromIndex) {
+        return nextSetBit(typeBits[paletteIndex], fromIndex);
+    }
+
+    /**
+     * Finds the next matching block of any type.
+     *
+     * @see #nextBlock(int, int)
+     */
+    public int nextBlock(int fromIndex) {
+        return nextSetBit(occupancy, fromIndex);
+    }
+
+    /**
+     * Checks whether another section holds the same blocks with the same types,
+     * even if it is a different instance.
+     */
+    boolean hasSameBlocks(TrackedSection other) {
+        if (sectionKey != other.sectionKey || blockCount != other.blockCount
+                || !Arrays.equals(types, other.types)) {
+            return false;
+        }
+        for (int paletteIndex = 0; paletteIndex < typeBits.length; paletteIndex++) {
+            if (!Arrays.equals(typeBits[paletteIndex], other.typeBits[paletteIndex])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return one 64-block word of a palette entry's bitset */
+    long getTypeWord(int paletteIndex, int word) {
+        return typeBits[paletteIndex][word];
+    }
+
+    /**
+     * Estimates the heap memory retained by this section, for cache accounting.
+     */
+    long estimateMemoryBytes() {
+        int bitsets = typeBits.length == 1 ? 1 : typeBits.length + 1;
+        return 64 + bitsets * (WORDS_PER_SECTION * Long.BYTES + 16L) + types.length * 8L;
+    }
+
+    /**
+     * Gets the squared distance from a position to the closest block center of
+     * this section, a lower bound for every block in it.
+     */
+    double getDistanceSq(Vec3d origin) {
+        double dx = getAxisDistance(ChunkSectionPos.unpackX(sectionKey), origin.x);
+        double dy = getAxisDistance(ChunkSectionPos.unpackY(sectionKey), origin.y);
+        double dz = getAxisDistance(ChunkSectionPos.unpackZ(sectionKey), origin.z);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double getAxisDistance(int sectionCoord, double origin) {
+        double min = ChunkSectionPos.getBlockCoord(sectionCoord) + 0.5;
+        double max = min + 15;
+        return origin < min ? min - origin : origin > max ? origin - max : 0;
+    }
+
+    /** @return the world X coordinate of a block in this section */
+    public int getBlockX(int localIndex) {
+        return ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionKey)) + (localIndex & 15);
+    }
+
+    public int getBlockY(int localIndex) {
+        return ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionKey)) + (localIndex >>> 8 & 15);
+    }
+
+    public int getBlockZ(int localIndex) {
+        return ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionKey)) + (localIndex >>> 4 & 15);
+    }
+
+    private static int nextSetBit(long[] bits, int fromIndex) {
+        if (fromIndex < 0 || fromIndex >= BLOCKS_PER_SECTION) {
+            return -1;
+        }
+
+        int word = fromIndex >>> 6;
+        long remaining = bits[word] & -1L << fromIndex;
+        while (remaining == 0) {
+            if (++word == WORDS_PER_SECTION) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+        return word << 6 | Long.numberOfTrailingZeros(remaining);
+    }
+
+    /**
+     * Collects the matches of one section, growing the type palette as new types
+     * show up.
+     */
+    static final class Builder {
+        private final long sectionKey;
+        private Identifier[] types = new Identifier[0];
+        private long[][] typeBits = new long[0][];
+        private Identifier lastType;
+        private int lastPaletteIndex = -1;
+
+        Builder(long sectionKey) {
+            this.sectionKey = sectionKey;
+        }
+
+        void add(int localIndex, Identifier type) {
+            // Runs of the same type are common, so remember the last palette entry
+            if (type != lastType) {
+                lastType = type;
+                lastPaletteIndex = indexOf(type);
+                if (lastPaletteIndex < 0) {
+                    lastPaletteIndex = types.length;
+                    types = Arrays.copyOf(types, lastPaletteIndex + 1);
+                    typeBits = Arrays.copyOf(typeBits, lastPaletteIndex + 1);
+                    types[lastPaletteIndex] = type;
+                    typeBits[lastPaletteIndex] = new long[WORDS_PER_SECTION];
+                }
+            }
+
+            typeBits[lastPaletteIndex][localIndex >>> 6] |= 1L << localIndex;
+        }
+
+        private int indexOf(Identifier type) {
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** @return the section, or {@code null} if nothing was added */
+        TrackedSection build() {
+            return types.length == 0 ? null : new TrackedSection(sectionKey, types, typeBits);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.moreoutlines.scanner;
+
+import com.moreoutlines.config.ModConfig;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caps on how many tracked blocks are published, nearest to an origin first.
+ *
+ * @param origin          the position distances are measured from
+ * @param maxBlocks       the global cap, or 0 for no limit
+ * @param maxBlocksByType per-type caps; types without an entry are only bound
+ *                        by the global cap
+ * @param maxRememberedBlocks how many blocks outside the scan volume may be
+ *                        remembered, or 0 if remembering is off
+ */
+record TrackingLimits(Vec3d origin, int maxBlocks, Map<Identifier, Integer> maxBlocksByType, int maxRememberedBlocks) {
+
+    /**
+     * Captures the configured caps. Must be called from the client thread.
+     */
+    static TrackingLimits capture(Vec3d origin) {
+        Map<Identifier, Integer> maxBlocksByType = new HashMap<>();
+        for (Map.Entry<Identifier, ModConfig.OutlineConfig> entry : ModConfig.INSTANCE.selectedBlocks.entrySet()) {
+            ModConfig.OutlineConfig config = entry.getValue();
+            if (config.enabled && config.maxBlocks > 0) {
+                maxBlocksByType.put(entry.getKey(), config.maxBlocks);
+            }
+        }
+        int maxRememberedBlocks = ModConfig.INSTANCE.rememberBlocks ? Math.max(0, ModConfig.INSTANCE.maxRememberedBlocks) : 0;
+        return new TrackingLimits(origin, Math.max(0, ModConfig.INSTANCE.maxTrackedBlocks), Map.copyOf(maxBlocksByType),
+            maxRememberedBlocks);
+    }
+
+    /** @return true if every tracked block is published */
+    boolean isUnlimited() {
+        return maxBlocks == 0 && maxBlocksByType.isEmpty();
+    }
+
+    boolean hasSameCaps(TrackingLimits other) {
+        return maxBlocks == other.maxBlocks && maxBlocksByType.equals(other.maxBlocksByType)
+            && maxRememberedBlocks == other.maxRememberedBlocks;
+    }
+}
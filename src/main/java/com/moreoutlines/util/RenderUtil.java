@@ -1,6 +1,8 @@
 package com.moreoutlines.util;
 
 import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.util.math.Box;
 
 /**
  * Rendering helpers for compatibility across Minecraft versions.
@@ -31,4 +33,20 @@ public final class RenderUtil {
         // Right
         context.fill(x + width - 1, y + 1, x + width, y + height - 1, color);
     }
+
+    /**
+     * Checks whether a box lies entirely inside a frustum, which holds when all
+     * its corners do as the frustum is convex.
+     */
+    public static boolean isInside(Frustum frustum, Box box) {
+        for (int corner = 0; corner < 8; corner++) {
+            double x = (corner & 1) == 0 ? box.minX : box.maxX;
+            double y = (corner & 2) == 0 ? box.minY : box.maxY;
+            double z = (corner & 4) == 0 ? box.minZ : box.maxZ;
+            if (!frustum.isVisible(new Box(x, y, z, x, y, z))) {
+                return false;
+            }
+        }
+        return true;
+    }
 }